@@ -0,0 +1,178 @@
+package com.unclezs.jfx.launcher;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * 基准测试的数据生成
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/23 21:12
+ */
+final class BenchmarkData {
+  private BenchmarkData() {
+  }
+
+  /**
+   * 生成包含指定数量资源的配置
+   *
+   * @param count 资源数量
+   * @return 配置
+   */
+  static Manifest manifest(int count) {
+    Random random = new Random(count);
+    Manifest manifest = new Manifest();
+    manifest.setAppName("benchmark");
+    manifest.setVersion("1.0.0");
+    manifest.setUrl("https://example.com/app/");
+    manifest.setConfigPath("conf/app.json");
+    manifest.setLaunchModule("bench.app");
+    manifest.setLaunchClass("bench.app.App");
+    List<Resource> resources = new ArrayList<>(count);
+    byte[] digest = new byte[32];
+    for (int i = 0; i < count; i++) {
+      Resource resource = new Resource(String.format("lib/group-%d/module-%d.jar", i % 64, i), 1024L + random.nextInt(1 << 20), Resource.Type.JAR);
+      random.nextBytes(digest);
+      resource.setHash(HashUtils.toHex(digest));
+      resources.add(resource);
+    }
+    manifest.setResources(resources);
+    return manifest;
+  }
+
+  /**
+   * 生成文件树，并返回与之一致的配置
+   *
+   * @param dir      目录
+   * @param count    文件数量
+   * @param fileSize 文件大小
+   * @return 配置
+   * @throws IOException 写入失败
+   */
+  static Manifest fileTree(Path dir, int count, int fileSize) throws IOException {
+    Random random = new Random(count);
+    Manifest manifest = manifest(0);
+    List<Resource> resources = new ArrayList<>(count);
+    byte[] content = new byte[fileSize];
+    for (int i = 0; i < count; i++) {
+      Path file = dir.resolve(String.format("lib/group-%d/file-%d.bin", i % 64, i));
+      Files.createDirectories(file.getParent());
+      random.nextBytes(content);
+      Files.write(file, content);
+      Resource resource = new Resource(file.toAbsolutePath().toString(), (long) fileSize, Resource.Type.JAR);
+      resource.setHash(HashUtils.sha256(file));
+      resources.add(resource);
+    }
+    manifest.setResources(resources);
+    return manifest;
+  }
+
+  /**
+   * 生成模块化 JAR：count 个独立模块与一个依赖所有模块的根模块 bench.root
+   *
+   * @param dir   目录
+   * @param count 模块数量
+   * @return JAR 路径
+   * @throws IOException 生成失败
+   */
+  static Path[] modularJars(Path dir, int count) throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new IllegalStateException("生成模块需要在 JDK 上运行");
+    }
+    Path sources = dir.resolve("src");
+    Path classes = dir.resolve("classes");
+    List<String> modules = new ArrayList<>();
+    StringBuilder root = new StringBuilder("module bench.root {\n");
+    for (int i = 0; i < count; i++) {
+      String module = "bench.m" + i;
+      modules.add(module);
+      root.append("  requires ").append(module).append(";\n");
+      write(sources.resolve(module).resolve("module-info.java"), String.format("module %s {%n  exports %s;%n}%n", module, module));
+      write(sources.resolve(module).resolve(module.replace('.', '/')).resolve("Api.java"),
+        String.format("package %s;%n%npublic class Api {%n  public static int id() {%n    return %d;%n  }%n}%n", module, i));
+    }
+    modules.add("bench.root");
+    write(sources.resolve("bench.root").resolve("module-info.java"), root.append("}\n").toString());
+    write(sources.resolve("bench.root").resolve("bench/root/Main.java"), "package bench.root;\n\npublic class Main {\n}\n");
+    List<String> files;
+    try (Stream<Path> stream = Files.walk(sources)) {
+      files = stream.filter(file -> file.toString().endsWith(".java")).map(Path::toString).collect(Collectors.toList());
+    }
+    List<String> args = new ArrayList<>(List.of("-nowarn", "-Xlint:none", "-d", classes.toString(), "--module-source-path", sources.toString()));
+    args.addAll(files);
+    if (compiler.run(null, null, null, args.toArray(new String[0])) != 0) {
+      throw new IllegalStateException("编译生成的模块失败");
+    }
+    Path[] jars = new Path[modules.size()];
+    for (int i = 0; i < modules.size(); i++) {
+      jars[i] = dir.resolve("jars").resolve(modules.get(i) + ".jar");
+      jar(classes.resolve(modules.get(i)), jars[i]);
+    }
+    return jars;
+  }
+
+  /**
+   * 删除目录
+   *
+   * @param dir 目录
+   * @throws IOException 删除失败
+   */
+  static void delete(Path dir) throws IOException {
+    if (dir == null || Files.notExists(dir)) {
+      return;
+    }
+    try (Stream<Path> stream = Files.walk(dir)) {
+      for (Path file : stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  /**
+   * 写入源文件
+   *
+   * @param file    文件
+   * @param content 内容
+   * @throws IOException 写入失败
+   */
+  private static void write(Path file, String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * 将编译好的模块打包为 JAR
+   *
+   * @param classes 模块的 class 目录
+   * @param jar     JAR 文件
+   * @throws IOException 打包失败
+   */
+  private static void jar(Path classes, Path jar) throws IOException {
+    Files.createDirectories(jar.getParent());
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(classes)) {
+      files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+      for (Path file : files) {
+        out.putNextEntry(new JarEntry(classes.relativize(file).toString().replace('\\', '/')));
+        Files.copy(file, out);
+        out.closeEntry();
+      }
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.unclezs.jfx.launcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析配置文件
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/23 21:30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ManifestParseBenchmark {
+  @Param({"100", "10000", "100000"})
+  public int resources;
+  private Path file;
+  private URI uri;
+
+  @Setup
+  public void setup() throws IOException {
+    file = Files.createTempFile("manifest-", ".json");
+    Files.writeString(file, BenchmarkData.manifest(resources).toJson());
+    uri = file.toUri();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public Manifest load() {
+    return Manifest.load(uri);
+  }
+}
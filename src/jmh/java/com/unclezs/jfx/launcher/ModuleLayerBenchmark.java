@@ -0,0 +1,48 @@
+package com.unclezs.jfx.launcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析模块化 JAR 并定义模块层
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/23 21:55
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ModuleLayerBenchmark {
+  @Param({"10", "100"})
+  public int modules;
+  private Path dir;
+  private Path[] jars;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("module-layer-");
+    jars = BenchmarkData.modularJars(dir, modules);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    BenchmarkData.delete(dir);
+  }
+
+  @Benchmark
+  public ModuleLayer defineLayer() {
+    return new ModuleLoader(jars, "bench.root").getLayer();
+  }
+}
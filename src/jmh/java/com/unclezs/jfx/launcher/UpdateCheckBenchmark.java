@@ -0,0 +1,75 @@
+package com.unclezs.jfx.launcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检测本地文件是否需要更新，所有文件都与配置一致，即启动时没有更新的常见情况
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/23 21:41
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UpdateCheckBenchmark {
+  @Param({"1000", "10000"})
+  public int files;
+  @Param({"4096"})
+  public int fileSize;
+  private Path dir;
+  private Manifest local;
+  private Manifest remote;
+  private FileIndex fileIndex;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("update-check-");
+    local = BenchmarkData.fileTree(dir, files, fileSize);
+    remote = Manifest.GSON.fromJson(local.toJson(), Manifest.class);
+    fileIndex = FileIndex.load(dir.resolve(FileIndex.FILE_NAME));
+    // 预热索引，模拟上次启动已经记录过摘要
+    ManifestDiff.compare(local, remote, fileIndex, false);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    BenchmarkData.delete(dir);
+  }
+
+  /**
+   * 本地配置为已安装的配置，配置中未变化的资源不检查本地文件
+   */
+  @Benchmark
+  public UpdatePlan planInstalled() {
+    return ManifestDiff.compare(local, remote, fileIndex, true);
+  }
+
+  /**
+   * 有文件索引，只需读取文件属性
+   */
+  @Benchmark
+  public UpdatePlan planIndexed() {
+    return ManifestDiff.compare(local, remote, fileIndex, false);
+  }
+
+  /**
+   * 没有文件索引，每个文件都要计算摘要
+   */
+  @Benchmark
+  public UpdatePlan planUnindexed() {
+    return ManifestDiff.compare(local, remote, null, false);
+  }
+}
@@ -0,0 +1,151 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.extern.java.Log;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * 自适应并发限制
+ * <p>
+ * 同时进行的下载数不超过当前上限。服务端返回 429/503 时上限减半，并在 Retry-After 之前暂停发起新的下载；
+ * 开启自适应时，响应延迟明显高于基线（服务端或网络开始排队）时上限减一，延迟正常时加一，直到配置的并发数。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/01 20:40
+ */
+@Log
+public class AdaptiveLimiter {
+  /**
+   * 延迟超过基线的倍数时认为开始拥塞
+   */
+  private static final double LATENCY_TOLERANCE = 2.0;
+  /**
+   * 基线向较慢的延迟靠拢的速度，基线取最小延迟并缓慢上浮，适应网络环境变化
+   */
+  private static final double BASELINE_DRIFT = 0.05;
+  /**
+   * 最大并发数
+   */
+  private final int maxLimit;
+  /**
+   * 是否根据延迟调整上限
+   */
+  private final boolean adaptive;
+  /**
+   * 当前上限
+   */
+  private int limit;
+  /**
+   * 进行中的下载数
+   */
+  private int inFlight;
+  /**
+   * 暂停到该时间（nanoTime）之前不发起新的下载
+   */
+  private long pauseUntil;
+  /**
+   * 延迟基线，小于 0 表示还没有样本
+   */
+  private double baseline = -1;
+
+  /**
+   * 并发限制
+   *
+   * @param maxLimit 最大并发数
+   * @param adaptive 是否根据延迟调整上限
+   */
+  public AdaptiveLimiter(int maxLimit, boolean adaptive) {
+    this.maxLimit = Math.max(1, maxLimit);
+    this.adaptive = adaptive;
+    this.limit = this.maxLimit;
+    this.pauseUntil = System.nanoTime();
+  }
+
+  /**
+   * 获取许可，超过上限或处于暂停期间时阻塞
+   *
+   * @throws InterruptedException 等待被中断
+   */
+  public synchronized void acquire() throws InterruptedException {
+    while (true) {
+      long pause = pauseUntil - System.nanoTime();
+      if (pause > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, pause);
+      } else if (inFlight >= limit) {
+        wait();
+      } else {
+        inFlight++;
+        return;
+      }
+    }
+  }
+
+  /**
+   * 不等待地获取许可
+   *
+   * @return true 获取成功，超过上限或处于暂停期间返回 false
+   */
+  public synchronized boolean tryAcquire() {
+    if (pauseUntil - System.nanoTime() > 0 || inFlight >= limit) {
+      return false;
+    }
+    inFlight++;
+    return true;
+  }
+
+  /**
+   * 释放许可
+   */
+  public synchronized void release() {
+    inFlight--;
+    notifyAll();
+  }
+
+  /**
+   * 记录一次成功响应的延迟
+   *
+   * @param latencyNanos 从发起请求到收到响应头的时间
+   */
+  public synchronized void onSuccess(long latencyNanos) {
+    if (!adaptive || latencyNanos <= 0) {
+      return;
+    }
+    if (baseline < 0 || latencyNanos < baseline) {
+      baseline = latencyNanos;
+    } else {
+      baseline += (latencyNanos - baseline) * BASELINE_DRIFT;
+    }
+    if (latencyNanos > baseline * LATENCY_TOLERANCE) {
+      if (limit > 1) {
+        limit--;
+        log.log(Level.INFO, "响应延迟升高，并发数降为 {0}", limit);
+      }
+    } else if (limit < maxLimit) {
+      limit++;
+      notifyAll();
+    }
+  }
+
+  /**
+   * 服务端繁忙（429/503），上限减半并暂停发起新的下载
+   *
+   * @param delayMillis 暂停时间
+   */
+  public synchronized void onBusy(long delayMillis) {
+    if (adaptive) {
+      limit = Math.max(1, limit / 2);
+    }
+    pauseUntil = Math.max(pauseUntil, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+    log.log(Level.INFO, "服务端繁忙，{0} ms 后继续，并发数: {1}", new Object[]{delayMillis, limit});
+  }
+
+  /**
+   * 当前上限
+   *
+   * @return 并发数
+   */
+  public synchronized int getLimit() {
+    return limit;
+  }
+}
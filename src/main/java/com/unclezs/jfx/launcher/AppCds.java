@@ -0,0 +1,243 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.logging.Level;
+
+/**
+ * 动态 AppCDS 归档
+ * <p>
+ * CDS 归档只能通过 JVM 参数启用，因此启动器会带上参数重新启动自身：归档与当前 JAR 资源一致时使用
+ * -XX:SharedArchiveFile 启动，否则使用 -XX:ArchiveClassesAtExit 在本次运行退出时重新生成。
+ * 指纹由 JVM 版本与所有 JAR 资源的路径、大小、摘要组成，任意变化都会使归档失效。需要 JDK 13 及以上。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/20 20:41
+ */
+@Log
+public class AppCds {
+  /**
+   * 归档文件名
+   */
+  public static final String ARCHIVE_FILE = "app-cds.jsa";
+  /**
+   * 归档信息文件名
+   */
+  public static final String INFO_FILE = "app-cds.json";
+  /**
+   * 标记子进程的环境变量，避免重复重启
+   */
+  private static final String MODE_ENV = "JFX_LAUNCHER_CDS";
+  private static final String MODE_DUMP = "dump";
+  private static final String MODE_SHARE = "share";
+  /**
+   * 动态归档最低的 JDK 版本
+   */
+  private static final int MIN_FEATURE_VERSION = 13;
+  /**
+   * 归档文件
+   */
+  private final Path archive;
+  /**
+   * 归档信息文件
+   */
+  private final Path infoFile;
+  /**
+   * 当前资源的指纹
+   */
+  private final String fingerprint;
+
+  /**
+   * 当前资源对应的归档
+   *
+   * @param manifest 本地配置
+   */
+  public AppCds(Manifest manifest) {
+    this.archive = manifest.localFile(ARCHIVE_FILE);
+    this.infoFile = manifest.localFile(INFO_FILE);
+    this.fingerprint = fingerprint(manifest);
+  }
+
+  /**
+   * 需要时带上 CDS 参数重启自身并等待新进程结束。在 JavaFX 启动之前调用
+   * <p>
+   * 新进程的命令由当前 JVM 的 java.home、JVM 参数、类路径或模块路径与入口类组成，各平台一致。
+   *
+   * @param mainClass 入口类
+   * @param args      启动参数
+   * @return 已重启时为新进程的退出码，当前进程应当以此退出；未重启为空
+   */
+  public OptionalInt relaunch(Class<?> mainClass, String[] args) {
+    if (System.getenv(MODE_ENV) != null) {
+      // 已经是重启后的进程
+      return OptionalInt.empty();
+    }
+    if (Runtime.version().feature() < MIN_FEATURE_VERSION) {
+      log.log(Level.INFO, "当前 JDK 不支持动态 CDS 归档: {0}", Runtime.version());
+      return OptionalInt.empty();
+    }
+    List<String> jvmArguments = ManagementFactory.getRuntimeMXBean().getInputArguments();
+    for (String argument : jvmArguments) {
+      if (argument.contains("SharedArchiveFile") || argument.contains("ArchiveClassesAtExit")) {
+        log.info("启动参数中已指定 CDS 归档，跳过");
+        return OptionalInt.empty();
+      }
+    }
+    boolean fresh = isFresh();
+    List<String> cmd = new ArrayList<>();
+    cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    if (fresh) {
+      log.log(Level.INFO, "CDS 归档有效，使用归档重新启动: {0}", archive);
+      cmd.add("-XX:SharedArchiveFile=" + archive);
+    } else {
+      log.log(Level.INFO, "CDS 归档不存在或已过期，重新启动并生成: {0}", archive);
+      try {
+        // JVM 生成的归档是只读的，Windows 下需要先去掉只读才能删除
+        archive.toFile().setWritable(true);
+        Files.deleteIfExists(archive);
+      } catch (IOException e) {
+        log.log(Level.WARNING, "删除过期的 CDS 归档失败: " + archive, e);
+        return OptionalInt.empty();
+      }
+      cmd.add("-XX:ArchiveClassesAtExit=" + archive);
+    }
+    // 模块路径与主模块由下面重新指定，--add-modules 等其余模块参数保留
+    jvmArguments.stream()
+      .filter(argument -> !argument.startsWith("--module-path") && !argument.startsWith("-Djdk.module."))
+      .forEach(cmd::add);
+    // 启动器在类路径上时 JavaFX 等依赖仍然可能在模块路径上，jlink 镜像中的模块则没有模块路径
+    String modulePath = System.getProperty("jdk.module.path");
+    if (modulePath != null && !modulePath.isEmpty()) {
+      cmd.add("--module-path");
+      cmd.add(modulePath);
+    }
+    String classPath = System.getProperty("java.class.path");
+    if (classPath != null && !classPath.isEmpty()) {
+      cmd.add("-cp");
+      cmd.add(classPath);
+    }
+    if (mainClass.getModule().isNamed()) {
+      cmd.add("--module");
+      cmd.add(mainClass.getModule().getName() + "/" + mainClass.getName());
+    } else {
+      cmd.add(mainClass.getName());
+    }
+    cmd.addAll(List.of(args));
+    ProcessBuilder builder = new ProcessBuilder(cmd).inheritIO();
+    builder.environment().put(MODE_ENV, fresh ? MODE_SHARE : MODE_DUMP);
+    Process process;
+    try {
+      process = builder.start();
+    } catch (IOException e) {
+      log.log(Level.WARNING, "使用 CDS 归档重启失败，直接启动", e);
+      return OptionalInt.empty();
+    }
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return OptionalInt.of(process.waitFor());
+        } catch (InterruptedException e) {
+          // 当前进程只是等待新进程，退出码以新进程为准
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * 重启后的进程中记录归档状态，生成归档时保存对应的指纹
+   */
+  public void record() {
+    String mode = System.getenv(MODE_ENV);
+    if (MODE_DUMP.equals(mode)) {
+      writeInfo();
+      log.log(Level.INFO, "本次运行退出时生成 CDS 归档: {0}", archive);
+    } else if (MODE_SHARE.equals(mode)) {
+      log.log(Level.INFO, "已使用 CDS 归档启动: {0}", archive);
+    }
+  }
+
+  /**
+   * 归档是否存在且与当前资源一致
+   *
+   * @return true 有效
+   */
+  private boolean isFresh() {
+    if (Files.notExists(archive) || Files.notExists(infoFile)) {
+      return false;
+    }
+    try (Reader reader = Files.newBufferedReader(infoFile, StandardCharsets.UTF_8)) {
+      Info info = Manifest.GSON.fromJson(reader, Info.class);
+      return info != null && fingerprint.equals(info.getFingerprint());
+    } catch (Exception e) {
+      log.log(Level.WARNING, "读取 CDS 归档信息失败: " + infoFile, e);
+      return false;
+    }
+  }
+
+  /**
+   * 记录即将生成的归档对应的指纹
+   */
+  private void writeInfo() {
+    Info info = new Info();
+    info.setFingerprint(fingerprint);
+    info.setJavaVersion(System.getProperty("java.vm.version"));
+    try {
+      Files.writeString(infoFile, Manifest.GSON.toJson(info));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "保存 CDS 归档信息失败: " + infoFile, e);
+    }
+  }
+
+  /**
+   * 计算 JVM 版本与 JAR 资源的指纹
+   *
+   * @param manifest 配置
+   * @return 指纹
+   */
+  private static String fingerprint(Manifest manifest) {
+    MessageDigest digest = HashUtils.newDigest();
+    digest.update(System.getProperty("java.vm.version", "").getBytes(StandardCharsets.UTF_8));
+    manifest.resolveResources(Resource.Type.JAR).stream()
+      .sorted(Comparator.comparing(Resource::getPath))
+      .forEach(resource -> {
+        String line = String.format("\n%s:%s:%s", resource.getPath(), resource.getSize(), resource.getHash());
+        digest.update(line.getBytes(StandardCharsets.UTF_8));
+      });
+    return HashUtils.toHex(digest.digest());
+  }
+
+  /**
+   * 归档信息
+   */
+  @Data
+  @NoArgsConstructor
+  public static class Info {
+    /**
+     * 生成归档时的资源指纹
+     */
+    private String fingerprint;
+    /**
+     * 生成归档的 JVM 版本
+     */
+    private String javaVersion;
+  }
+}
@@ -0,0 +1,524 @@
+package com.unclezs.jfx.launcher;
+
+import com.google.gson.JsonObject;
+import lombok.experimental.UtilityClass;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二进制配置格式
+ * <p>
+ * JSON 仍然是编写配置的格式，客户端下载与本地保存的可以是转换后的二进制格式。资源以外的字段数量很少，仍以 JSON 保存在文件头中；
+ * 资源的目录、枚举等重复出现的字符串放入字符串表只保存序号，数字使用变长编码，小写十六进制的 SHA-256 保存为 32 字节。
+ *
+ * <pre>
+ * 转换配置：java -cp jfx-launcher.jar com.unclezs.jfx.launcher.BinaryManifest app.json [app.jfxm]
+ * </pre>
+ * 输入为二进制配置时反向转换为 JSON，便于查看。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/29 20:37
+ */
+@UtilityClass
+public class BinaryManifest {
+  /**
+   * 文件扩展名
+   */
+  public static final String EXTENSION = ".jfxm";
+  /**
+   * HTTP Content-Type
+   */
+  public static final String CONTENT_TYPE = "application/x-jfx-manifest";
+  /**
+   * 文件头
+   */
+  private static final int MAGIC = 0x4A46584D;
+  /**
+   * 格式版本
+   */
+  private static final int VERSION = 1;
+  /**
+   * SHA-256 字节数
+   */
+  private static final int HASH_LENGTH = 32;
+  private static final int FLAG_SIZE = 1;
+  private static final int FLAG_PLATFORM = 1 << 1;
+  private static final int FLAG_TYPE = 1 << 2;
+  private static final int FLAG_HASH = 1 << 3;
+  private static final int FLAG_HASH_BINARY = 1 << 4;
+  private static final int FLAG_ENCODING = 1 << 5;
+  private static final int FLAG_TRANSFER_SIZE = 1 << 6;
+  private static final int FLAG_PATCHES = 1 << 7;
+  private static final int BUFFER_SIZE = 65536;
+
+  /**
+   * 按扩展名或 Content-Type 判断是否为二进制配置
+   *
+   * @param location    配置地址
+   * @param contentType HTTP Content-Type，可为空
+   * @return true 二进制配置
+   */
+  public static boolean isBinary(String location, String contentType) {
+    if (contentType != null && contentType.toLowerCase().startsWith(CONTENT_TYPE)) {
+      return true;
+    }
+    if (location == null) {
+      return false;
+    }
+    int query = location.indexOf('?');
+    return (query < 0 ? location : location.substring(0, query)).toLowerCase().endsWith(EXTENSION);
+  }
+
+  /**
+   * 写入二进制配置
+   *
+   * @param manifest 配置
+   * @param out      输出，不会被关闭
+   * @throws IOException 写入失败
+   */
+  public static void write(Manifest manifest, OutputStream out) throws IOException {
+    JsonObject header = Manifest.GSON.toJsonTree(manifest).getAsJsonObject();
+    header.remove("resources");
+    List<Resource> resources = manifest.getResources() == null ? List.of() : manifest.getResources();
+    StringTable table = new StringTable();
+    for (Resource resource : resources) {
+      table.add(directory(resource.getPath()));
+      table.add(resource.getPlatform());
+      table.add(resource.getType());
+      table.add(resource.getEncoding());
+    }
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    data.writeInt(MAGIC);
+    data.writeByte(VERSION);
+    writeString(data, Manifest.GSON.toJson(header));
+    writeVarint(data, table.strings.size());
+    for (String string : table.strings) {
+      writeString(data, string);
+    }
+    writeVarint(data, resources.size());
+    for (Resource resource : resources) {
+      writeResource(data, resource, table);
+    }
+    data.flush();
+  }
+
+  /**
+   * 读取二进制配置
+   *
+   * @param in 输入
+   * @return 配置
+   * @throws IOException 读取失败或格式错误
+   */
+  public static Manifest read(InputStream in) throws IOException {
+    // 配置一次性读入内存后按字节解析，避免逐字节读取流的开销
+    Input data = new Input(in.readAllBytes());
+    if (data.readInt() != MAGIC) {
+      throw new IOException("不是二进制配置文件");
+    }
+    int version = data.readByte();
+    if (version != VERSION) {
+      throw new IOException("不支持的二进制配置版本: " + version);
+    }
+    Manifest manifest = Manifest.GSON.fromJson(readString(data), Manifest.class);
+    String[] strings = new String[readCount(data)];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = readString(data);
+    }
+    int count = readCount(data);
+    List<Resource> resources = new ArrayList<>(count);
+    ResourceIndex index = new ResourceIndex();
+    for (int i = 0; i < count; i++) {
+      Resource resource = readResource(data, strings);
+      resources.add(resource);
+      index.add(resource);
+    }
+    manifest.setResources(resources, index);
+    return manifest;
+  }
+
+  /**
+   * 转换配置格式
+   *
+   * @param args 输入文件 [输出文件]
+   * @throws IOException 读写失败
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("用法: BinaryManifest <配置文件> [输出文件]");
+      return;
+    }
+    Path input = Path.of(args[0]);
+    Path output;
+    if (args.length > 1) {
+      output = Path.of(args[1]);
+    } else {
+      String name = input.getFileName().toString();
+      int dot = name.lastIndexOf('.');
+      String baseName = dot < 0 ? name : name.substring(0, dot);
+      output = input.resolveSibling(baseName + (isBinary(name, null) ? ".json" : EXTENSION));
+    }
+    Manifest manifest = Manifest.load(input.toUri());
+    manifest.write(output);
+    System.out.printf("%s -> %s (%d 个资源)%n", input, output, manifest.getResources().size());
+  }
+
+  /**
+   * 写入资源
+   *
+   * @param data     输出
+   * @param resource 资源
+   * @param table    字符串表
+   * @throws IOException 写入失败
+   */
+  private static void writeResource(DataOutputStream data, Resource resource, StringTable table) throws IOException {
+    String hash = resource.getHash();
+    byte[] hashBytes = hash == null || hash.length() != HASH_LENGTH * 2 ? null : HashUtils.fromHex(hash);
+    int flags = 0;
+    flags |= resource.getSize() == null ? 0 : FLAG_SIZE;
+    flags |= resource.getPlatform() == null ? 0 : FLAG_PLATFORM;
+    flags |= resource.getType() == null ? 0 : FLAG_TYPE;
+    flags |= hash == null ? 0 : (hashBytes == null ? FLAG_HASH : FLAG_HASH_BINARY);
+    flags |= resource.getEncoding() == null ? 0 : FLAG_ENCODING;
+    flags |= resource.getTransferSize() == null ? 0 : FLAG_TRANSFER_SIZE;
+    flags |= resource.getPatches() == null ? 0 : FLAG_PATCHES;
+    writeVarint(data, flags);
+    String path = resource.getPath();
+    String directory = directory(path);
+    writeVarint(data, table.indexOf(directory));
+    writeString(data, path.substring(directory.length()));
+    if (resource.getSize() != null) {
+      writeVarint(data, resource.getSize());
+    }
+    if (resource.getPlatform() != null) {
+      writeVarint(data, table.indexOf(resource.getPlatform().name()));
+    }
+    if (resource.getType() != null) {
+      writeVarint(data, table.indexOf(resource.getType().name()));
+    }
+    if (hashBytes != null) {
+      data.write(hashBytes);
+    } else if (hash != null) {
+      writeString(data, hash);
+    }
+    if (resource.getEncoding() != null) {
+      writeVarint(data, table.indexOf(resource.getEncoding().name()));
+    }
+    if (resource.getTransferSize() != null) {
+      writeVarint(data, resource.getTransferSize());
+    }
+    if (resource.getPatches() != null) {
+      writeVarint(data, resource.getPatches().size());
+      for (Patch patch : resource.getPatches()) {
+        writeNullableString(data, patch.getPath());
+        writeVarint(data, patch.getSize() == null ? 0 : patch.getSize() + 1);
+        writeNullableString(data, patch.getHash());
+        writeNullableString(data, patch.getFromHash());
+        writeNullableString(data, patch.getFromVersion());
+      }
+    }
+  }
+
+  /**
+   * 读取资源
+   *
+   * @param data    输入
+   * @param strings 字符串表
+   * @return 资源
+   * @throws IOException 读取失败
+   */
+  private static Resource readResource(Input data, String[] strings) throws IOException {
+    int flags = (int) readVarint(data);
+    Resource resource = new Resource();
+    String directory = strings[readIndex(data, strings)];
+    resource.setPath(directory.concat(readString(data)));
+    if ((flags & FLAG_SIZE) != 0) {
+      resource.setSize(readVarint(data));
+    }
+    if ((flags & FLAG_PLATFORM) != 0) {
+      resource.setPlatform(Platform.valueOf(strings[readIndex(data, strings)]));
+    }
+    if ((flags & FLAG_TYPE) != 0) {
+      resource.setType(Resource.Type.valueOf(strings[readIndex(data, strings)]));
+    }
+    if ((flags & FLAG_HASH_BINARY) != 0) {
+      byte[] hash = new byte[HASH_LENGTH];
+      data.readFully(hash);
+      resource.setHash(HashUtils.toHex(hash));
+    } else if ((flags & FLAG_HASH) != 0) {
+      resource.setHash(readString(data));
+    }
+    if ((flags & FLAG_ENCODING) != 0) {
+      resource.setEncoding(Resource.Encoding.valueOf(strings[readIndex(data, strings)]));
+    }
+    if ((flags & FLAG_TRANSFER_SIZE) != 0) {
+      resource.setTransferSize(readVarint(data));
+    }
+    if ((flags & FLAG_PATCHES) != 0) {
+      int count = readCount(data);
+      List<Patch> patches = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        Patch patch = new Patch();
+        patch.setPath(readNullableString(data));
+        long size = readVarint(data);
+        patch.setSize(size == 0 ? null : size - 1);
+        patch.setHash(readNullableString(data));
+        patch.setFromHash(readNullableString(data));
+        patch.setFromVersion(readNullableString(data));
+        patches.add(patch);
+      }
+      resource.setPatches(patches);
+    }
+    return resource;
+  }
+
+  /**
+   * 路径中的目录部分，包含结尾的 /
+   *
+   * @param path 路径
+   * @return 目录，没有目录返回空字符串
+   */
+  private static String directory(String path) {
+    return path.substring(0, path.lastIndexOf('/') + 1);
+  }
+
+  /**
+   * 写入无符号变长整数，每字节 7 位
+   *
+   * @param data  输出
+   * @param value 非负整数
+   * @throws IOException 写入失败
+   */
+  private static void writeVarint(DataOutputStream data, long value) throws IOException {
+    if (value < 0) {
+      throw new IOException("不支持负数: " + value);
+    }
+    while ((value & ~0x7FL) != 0) {
+      data.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    data.writeByte((int) value);
+  }
+
+  /**
+   * 读取无符号变长整数
+   *
+   * @param data 输入
+   * @return 整数
+   * @throws IOException 读取失败
+   */
+  private static long readVarint(Input data) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < Long.SIZE; shift += 7) {
+      int b = data.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("变长整数格式错误");
+  }
+
+  /**
+   * 读取数量
+   *
+   * @param data 输入
+   * @return 数量
+   * @throws IOException 读取失败或数量过大
+   */
+  private static int readCount(Input data) throws IOException {
+    long count = readVarint(data);
+    if (count > Integer.MAX_VALUE) {
+      throw new IOException("数量过大: " + count);
+    }
+    return (int) count;
+  }
+
+  /**
+   * 读取字符串表序号
+   *
+   * @param data    输入
+   * @param strings 字符串表
+   * @return 序号
+   * @throws IOException 读取失败或序号越界
+   */
+  private static int readIndex(Input data, String[] strings) throws IOException {
+    long index = readVarint(data);
+    if (index >= strings.length) {
+      throw new IOException("字符串序号越界: " + index);
+    }
+    return (int) index;
+  }
+
+  /**
+   * 写入字符串：UTF-8 长度 + 内容
+   *
+   * @param data   输出
+   * @param string 字符串
+   * @throws IOException 写入失败
+   */
+  private static void writeString(DataOutputStream data, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    writeVarint(data, bytes.length);
+    data.write(bytes);
+  }
+
+  /**
+   * 读取字符串
+   *
+   * @param data 输入
+   * @return 字符串
+   * @throws IOException 读取失败
+   */
+  private static String readString(Input data) throws IOException {
+    return data.readString(readCount(data));
+  }
+
+  /**
+   * 写入可为空的字符串，长度加一，0 表示 null
+   *
+   * @param data   输出
+   * @param string 字符串
+   * @throws IOException 写入失败
+   */
+  private static void writeNullableString(DataOutputStream data, String string) throws IOException {
+    if (string == null) {
+      writeVarint(data, 0);
+      return;
+    }
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    writeVarint(data, bytes.length + 1L);
+    data.write(bytes);
+  }
+
+  /**
+   * 读取可为空的字符串
+   *
+   * @param data 输入
+   * @return 字符串
+   * @throws IOException 读取失败
+   */
+  private static String readNullableString(Input data) throws IOException {
+    int length = readCount(data);
+    if (length == 0) {
+      return null;
+    }
+    return data.readString(length - 1);
+  }
+
+  /**
+   * 内存中的二进制配置
+   */
+  private static class Input {
+    private final byte[] bytes;
+    private int position;
+
+    Input(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    /**
+     * 读取无符号字节
+     *
+     * @return 0-255
+     * @throws EOFException 已读完
+     */
+    int readByte() throws EOFException {
+      if (position >= bytes.length) {
+        throw new EOFException();
+      }
+      return bytes[position++] & 0xFF;
+    }
+
+    /**
+     * 读取大端 int
+     *
+     * @return int
+     * @throws EOFException 已读完
+     */
+    int readInt() throws EOFException {
+      return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+    }
+
+    /**
+     * 读取字节
+     *
+     * @param target 目标
+     * @throws EOFException 剩余字节不足
+     */
+    void readFully(byte[] target) throws EOFException {
+      require(target.length);
+      System.arraycopy(bytes, position, target, 0, target.length);
+      position += target.length;
+    }
+
+    /**
+     * 读取 UTF-8 字符串
+     *
+     * @param length 字节数
+     * @return 字符串
+     * @throws EOFException 剩余字节不足
+     */
+    String readString(int length) throws EOFException {
+      require(length);
+      String string = new String(bytes, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return string;
+    }
+
+    /**
+     * 检查剩余字节数
+     *
+     * @param length 需要的字节数
+     * @throws EOFException 剩余字节不足
+     */
+    private void require(int length) throws EOFException {
+      if (length > bytes.length - position) {
+        throw new EOFException();
+      }
+    }
+  }
+
+  /**
+   * 字符串表
+   */
+  private static class StringTable {
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /**
+     * 加入字符串表
+     *
+     * @param value 字符串或枚举，为空忽略
+     */
+    void add(Object value) {
+      if (value != null) {
+        String string = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+        indexes.computeIfAbsent(string, key -> {
+          strings.add(key);
+          return strings.size() - 1;
+        });
+      }
+    }
+
+    /**
+     * 字符串的序号
+     *
+     * @param string 字符串
+     * @return 序号
+     */
+    int indexOf(String string) {
+      return indexes.get(string);
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 下载使用的缓冲区池
+ * <p>
+ * 读取网络数据的数组与写入文件的直接缓冲区都从池中取用，用完归还，不再每个资源分配一次。
+ * 同时统计分配、复用、复制与写入的次数，可以按每 MB 的分配与复制次数衡量下载路径的开销。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/08 20:30
+ */
+@UtilityClass
+public class BufferPool {
+  /**
+   * 缓冲区大小
+   */
+  public static final int BUFFER_SIZE = 65536;
+  /**
+   * 每种缓冲区最多保留的数量，超出的归还后交给 GC
+   */
+  private static final int MAX_POOLED = 64;
+  /**
+   * 1 MB
+   */
+  private static final double MEGABYTE = 1 << 20;
+  /**
+   * 空闲的直接缓冲区
+   */
+  private static final BlockingQueue<ByteBuffer> DIRECT = new ArrayBlockingQueue<>(MAX_POOLED);
+  /**
+   * 空闲的数组
+   */
+  private static final BlockingQueue<byte[]> ARRAYS = new ArrayBlockingQueue<>(MAX_POOLED);
+  /**
+   * 新分配的缓冲区数
+   */
+  private static final LongAdder ALLOCATIONS = new LongAdder();
+  /**
+   * 复用的缓冲区数
+   */
+  private static final LongAdder REUSES = new LongAdder();
+  /**
+   * 内存复制次数
+   */
+  private static final LongAdder COPIES = new LongAdder();
+  /**
+   * 内存复制的字节数
+   */
+  private static final LongAdder COPIED_BYTES = new LongAdder();
+  /**
+   * 写入文件的字节数
+   */
+  private static final LongAdder WRITTEN_BYTES = new LongAdder();
+
+  /**
+   * 取一个直接缓冲区，已清空
+   *
+   * @return 缓冲区
+   */
+  public static ByteBuffer acquireDirect() {
+    ByteBuffer buffer = DIRECT.poll();
+    if (buffer == null) {
+      ALLOCATIONS.increment();
+      return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+    REUSES.increment();
+    return buffer.clear();
+  }
+
+  /**
+   * 归还直接缓冲区
+   *
+   * @param buffer 缓冲区
+   */
+  public static void release(ByteBuffer buffer) {
+    if (buffer != null && buffer.isDirect() && buffer.capacity() == BUFFER_SIZE) {
+      DIRECT.offer(buffer);
+    }
+  }
+
+  /**
+   * 取一个数组
+   *
+   * @return 数组
+   */
+  public static byte[] acquireArray() {
+    byte[] array = ARRAYS.poll();
+    if (array == null) {
+      ALLOCATIONS.increment();
+      return new byte[BUFFER_SIZE];
+    }
+    REUSES.increment();
+    return array;
+  }
+
+  /**
+   * 归还数组
+   *
+   * @param array 数组
+   */
+  public static void release(byte[] array) {
+    if (array != null && array.length == BUFFER_SIZE) {
+      ARRAYS.offer(array);
+    }
+  }
+
+  /**
+   * 记录一次内存复制
+   *
+   * @param bytes 字节数
+   */
+  public static void copied(long bytes) {
+    COPIES.increment();
+    COPIED_BYTES.add(bytes);
+  }
+
+  /**
+   * 记录写入文件的字节数
+   *
+   * @param bytes 字节数
+   */
+  public static void written(long bytes) {
+    WRITTEN_BYTES.add(bytes);
+  }
+
+  /**
+   * 当前的统计
+   *
+   * @return 统计
+   */
+  public static Metrics metrics() {
+    return new Metrics(ALLOCATIONS.sum(), REUSES.sum(), COPIES.sum(), COPIED_BYTES.sum(), WRITTEN_BYTES.sum());
+  }
+
+  /**
+   * 缓冲区统计，均为启动以来的累计值
+   */
+  @Getter
+  @RequiredArgsConstructor
+  public static class Metrics {
+    /**
+     * 新分配的缓冲区数
+     */
+    private final long allocations;
+    /**
+     * 复用的缓冲区数
+     */
+    private final long reuses;
+    /**
+     * 内存复制次数
+     */
+    private final long copies;
+    /**
+     * 内存复制的字节数
+     */
+    private final long copiedBytes;
+    /**
+     * 写入文件的字节数
+     */
+    private final long writtenBytes;
+
+    /**
+     * 每写入 1 MB 新分配的缓冲区数
+     *
+     * @return 次数
+     */
+    public double getAllocationsPerMegabyte() {
+      return writtenBytes == 0 ? 0 : allocations / (writtenBytes / MEGABYTE);
+    }
+
+    /**
+     * 每写入 1 MB 的内存复制次数
+     *
+     * @return 次数
+     */
+    public double getCopiesPerMegabyte() {
+      return writtenBytes == 0 ? 0 : copies / (writtenBytes / MEGABYTE);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("写入 %d bytes，分配 %d 次（%.3f/MB），复用 %d 次，复制 %d 次（%.1f/MB，%d bytes）",
+        writtenBytes, allocations, getAllocationsPerMegabyte(), reuses, copies, getCopiesPerMegabyte(), copiedBytes);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package com.unclezs.jfx.launcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/**
+ * 后台写入文件的输出流
+ * <p>
+ * 读取线程把数据复制到池中的直接缓冲区，装满后放入有界队列，由写入线程按位置写入 FileChannel，磁盘较慢时不会拖慢网络读取，
+ * 队列满时读取线程才等待。每写入一定字节数刷盘后回调已写入的位置，关闭时截断开始位置之后未被覆盖的旧内容。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/08 21:05
+ */
+class ChannelWriter extends OutputStream {
+  /**
+   * 队列中最多等待写入的缓冲区数
+   */
+  private static final int QUEUE_CAPACITY = 8;
+  /**
+   * 每写入该字节数回调一次已写入的位置
+   */
+  static final long CHECKPOINT_BYTES = 4L << 20;
+  /**
+   * 等待队列时检查写入线程是否出错的间隔
+   */
+  private static final long POLL_MILLIS = 100;
+  /**
+   * 写入结束的标记
+   */
+  private static final ByteBuffer EOF = ByteBuffer.allocate(0);
+  /**
+   * 写入线程
+   */
+  private static final ExecutorService WRITERS;
+
+  static {
+    AtomicInteger threadIndex = new AtomicInteger();
+    WRITERS = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "Launcher-Writer-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * 文件
+   */
+  private final FileChannel channel;
+  /**
+   * 等待写入的缓冲区
+   */
+  private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  /**
+   * 已写入位置的回调，为空则不回调
+   */
+  private final LongConsumer checkpoint;
+  /**
+   * 写入任务
+   */
+  private final Future<?> task;
+  /**
+   * 已经写入文件的位置
+   */
+  private volatile long position;
+  /**
+   * 写入线程的异常
+   */
+  private volatile IOException failure;
+  /**
+   * 正在填充的缓冲区
+   */
+  private ByteBuffer current;
+  /**
+   * 是否已关闭
+   */
+  private boolean closed;
+
+  /**
+   * 打开文件
+   *
+   * @param file         文件
+   * @param position   开始写入的位置，之后的内容会被覆盖
+   * @param checkpoint 已写入位置的回调，在写入线程刷盘后调用，为空则不回调
+   * @throws IOException 打开失败
+   */
+  ChannelWriter(Path file, long position, LongConsumer checkpoint) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    this.position = position;
+    this.checkpoint = checkpoint;
+    try {
+      if (channel.size() > position) {
+        channel.truncate(position);
+      }
+      this.task = WRITERS.submit(this::drain);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkFailure();
+    while (len > 0) {
+      if (current == null) {
+        current = BufferPool.acquireDirect();
+      }
+      int count = Math.min(len, current.remaining());
+      current.put(b, off, count);
+      BufferPool.copied(count);
+      off += count;
+      len -= count;
+      if (!current.hasRemaining()) {
+        submit();
+      }
+    }
+  }
+
+  /**
+   * 已经写入文件的位置
+   *
+   * @return 位置
+   */
+  long position() {
+    return position;
+  }
+
+  /**
+   * 写入剩余数据，等待写入线程结束
+   *
+   * @throws IOException 写入失败
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    boolean interrupted = Thread.interrupted();
+    try {
+      if (current != null && current.position() > 0 && failure == null) {
+        submit();
+      }
+      BufferPool.release(current);
+      current = null;
+      // 写入线程出错后不再读取队列，此时不必等待结束标记入队
+      boolean queued = false;
+      while (failure == null && !queued) {
+        queued = queue.offer(EOF, POLL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      interrupted |= awaitWriter();
+      // 与写入线程一样先刷盘再回调，记录的位置不能超过磁盘上的数据
+      if (checkpoint != null && channel.isOpen()) {
+        channel.force(false);
+        checkpoint.accept(position);
+      }
+    } catch (InterruptedException e) {
+      interrupted = true;
+      task.cancel(true);
+    } finally {
+      try {
+        if (channel.isOpen() && channel.size() > position) {
+          channel.truncate(position);
+        }
+      } finally {
+        channel.close();
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    checkFailure();
+  }
+
+  /**
+   * 把正在填充的缓冲区放入队列，队列满时等待
+   *
+   * @throws IOException 写入线程出错
+   */
+  private void submit() throws IOException {
+    ByteBuffer buffer = current.flip();
+    current = null;
+    try {
+      while (!queue.offer(buffer, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (failure != null) {
+          BufferPool.release(buffer);
+          checkFailure();
+        }
+      }
+    } catch (InterruptedException e) {
+      BufferPool.release(buffer);
+      Thread.currentThread().interrupt();
+      throw new CancellationException("写入已取消");
+    }
+  }
+
+  /**
+   * 等待写入线程结束，不响应中断，写入线程只需要处理完队列中剩余的缓冲区
+   *
+   * @return 等待期间是否被中断
+   */
+  private boolean awaitWriter() {
+    boolean interrupted = false;
+    while (true) {
+      try {
+        task.get();
+        return interrupted;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      } catch (ExecutionException e) {
+        // 写入线程的异常记录在 failure 中
+        return interrupted;
+      }
+    }
+  }
+
+  /**
+   * 写入线程：按顺序把队列中的缓冲区写入文件
+   */
+  private void drain() {
+    long pos = position;
+    long unreported = 0;
+    try {
+      while (true) {
+        ByteBuffer buffer = queue.take();
+        if (buffer == EOF) {
+          break;
+        }
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+          pos += channel.write(buffer, pos);
+        }
+        BufferPool.release(buffer);
+        BufferPool.written(length);
+        position = pos;
+        unreported += length;
+        if (checkpoint != null && unreported >= CHECKPOINT_BYTES) {
+          // 先刷盘，回调的位置之前的数据在断电后仍然有效
+          channel.force(false);
+          checkpoint.accept(pos);
+          unreported = 0;
+        }
+      }
+    } catch (IOException e) {
+      failure = e;
+    } catch (InterruptedException e) {
+      failure = new IOException("写入线程被中断", e);
+    } catch (RuntimeException e) {
+      failure = new IOException(e);
+    } finally {
+      ByteBuffer buffer;
+      while ((buffer = queue.poll()) != null) {
+        BufferPool.release(buffer);
+      }
+    }
+  }
+
+  /**
+   * 写入线程出错时抛出
+   *
+   * @throws IOException 写入失败
+   */
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("写入文件失败", failure);
+    }
+  }
+}
@@ -0,0 +1,347 @@
+package com.unclezs.jfx.launcher;
+
+import com.google.gson.GsonBuilder;
+import lombok.experimental.UtilityClass;
+import lombok.extern.java.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 二进制增量补丁
+ * <p>
+ * 以固定大小的块为单位在旧文件中查找与新文件相同的内容，补丁只包含 COPY(旧文件偏移, 长度) 与 INSERT(新数据) 指令，
+ * 整个补丁再经过 Deflate 压缩。
+ *
+ * <pre>
+ * 生成补丁：java -cp jfx-launcher.jar com.unclezs.jfx.launcher.DeltaPatch 旧版本目录 新版本目录 [配置文件]
+ * </pre>
+ * 补丁输出到 新版本目录/patches 下，指定了配置文件时会把补丁写入对应资源的 patches 中。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/11 16:05
+ */
+@Log
+@UtilityClass
+public class DeltaPatch {
+  /**
+   * 补丁目录
+   */
+  public static final String PATCH_DIR = "patches";
+  /**
+   * 补丁文件头
+   */
+  private static final int MAGIC = 0x4A465844;
+  /**
+   * 匹配块大小
+   */
+  private static final int BLOCK = 32;
+  /**
+   * 滚动哈希的基数
+   */
+  private static final int PRIME = 31;
+  private static final byte OP_END = 0;
+  private static final byte OP_COPY = 1;
+  private static final byte OP_INSERT = 2;
+  /**
+   * 拷贝缓冲区大小
+   */
+  private static final int BUFFER_SIZE = 65536;
+
+  /**
+   * 生成补丁
+   *
+   * @param oldData 旧文件内容
+   * @param newData 新文件内容
+   * @param out     补丁输出
+   * @throws IOException 写入失败
+   */
+  public static void diff(byte[] oldData, byte[] newData, OutputStream out) throws IOException {
+    DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(deflater, BUFFER_SIZE));
+    data.writeInt(MAGIC);
+    data.writeLong(newData.length);
+    Map<Integer, Integer> blocks = indexBlocks(oldData);
+    int n = newData.length;
+    int insertStart = 0;
+    int i = 0;
+    int power = power();
+    int hash = n >= BLOCK ? hash(newData, 0) : 0;
+    while (i + BLOCK <= n) {
+      Integer position = blocks.get(hash);
+      if (position != null && Arrays.equals(oldData, position, position + BLOCK, newData, i, i + BLOCK)) {
+        // 向前、向后尽量扩展匹配范围
+        int start = i;
+        int oldStart = position;
+        while (start > insertStart && oldStart > 0 && newData[start - 1] == oldData[oldStart - 1]) {
+          start--;
+          oldStart--;
+        }
+        int length = i + BLOCK - start;
+        while (oldStart + length < oldData.length && start + length < n && oldData[oldStart + length] == newData[start + length]) {
+          length++;
+        }
+        writeInsert(data, newData, insertStart, start);
+        data.writeByte(OP_COPY);
+        data.writeLong(oldStart);
+        data.writeInt(length);
+        i = start + length;
+        insertStart = i;
+        if (i + BLOCK <= n) {
+          hash = hash(newData, i);
+        }
+        continue;
+      }
+      if (i + BLOCK < n) {
+        hash = (hash - newData[i] * power) * PRIME + newData[i + BLOCK];
+      }
+      i++;
+    }
+    writeInsert(data, newData, insertStart, n);
+    data.writeByte(OP_END);
+    data.flush();
+    deflater.finish();
+  }
+
+  /**
+   * 应用补丁
+   *
+   * @param oldFile 旧文件
+   * @param patch   补丁内容，应用后关闭
+   * @param out     新文件输出
+   * @return 新文件大小
+   * @throws IOException 补丁损坏或读写失败
+   */
+  public static long apply(Path oldFile, InputStream patch, OutputStream out) throws IOException {
+    long expectedSize;
+    long written = 0;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    ByteBuffer copyBuffer = ByteBuffer.wrap(buffer);
+    try (DataInputStream data = new DataInputStream(new BufferedInputStream(new InflaterInputStream(patch), BUFFER_SIZE));
+        FileChannel old = FileChannel.open(oldFile, StandardOpenOption.READ)) {
+      if (data.readInt() != MAGIC) {
+        throw new IOException("不是有效的补丁文件");
+      }
+      expectedSize = data.readLong();
+      while (true) {
+        byte op = data.readByte();
+        if (op == OP_END) {
+          break;
+        }
+        if (op == OP_COPY) {
+          long position = data.readLong();
+          int remaining = data.readInt();
+          while (remaining > 0) {
+            copyBuffer.clear().limit(Math.min(remaining, BUFFER_SIZE));
+            int read = old.read(copyBuffer, position);
+            if (read < 0) {
+              throw new EOFException("补丁与旧文件不匹配");
+            }
+            out.write(buffer, 0, read);
+            position += read;
+            remaining -= read;
+            written += read;
+          }
+        } else if (op == OP_INSERT) {
+          int remaining = data.readInt();
+          while (remaining > 0) {
+            int read = data.read(buffer, 0, Math.min(remaining, BUFFER_SIZE));
+            if (read < 0) {
+              throw new EOFException("补丁文件不完整");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+            written += read;
+          }
+        } else {
+          throw new IOException("未知的补丁指令: " + op);
+        }
+      }
+    }
+    if (written != expectedSize) {
+      throw new IOException(String.format("补丁应用后大小不一致 [expected=%d, actual=%d]", expectedSize, written));
+    }
+    return written;
+  }
+
+  /**
+   * 比较两个目录生成补丁
+   *
+   * @param oldDir      旧版本目录
+   * @param newDir      新版本目录
+   * @param manifest    需要写入补丁信息的配置文件，可为空
+   * @param fromVersion 旧版本号，可为空
+   * @return 资源路径 -> 补丁
+   * @throws IOException 读写失败
+   */
+  public static Map<String, Patch> generate(Path oldDir, Path newDir, Path manifest, String fromVersion) throws IOException {
+    Map<String, Patch> patches = new HashMap<>();
+    Path patchDir = newDir.resolve(PATCH_DIR);
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(newDir)) {
+      files = stream.filter(Files::isRegularFile).filter(file -> !file.startsWith(patchDir)).collect(Collectors.toList());
+    }
+    for (Path newFile : files) {
+      String path = newDir.relativize(newFile).toString().replace('\\', '/');
+      Path oldFile = oldDir.resolve(path);
+      if (!Files.isRegularFile(oldFile)) {
+        continue;
+      }
+      String fromHash = HashUtils.sha256(oldFile);
+      if (fromHash.equals(HashUtils.sha256(newFile))) {
+        continue;
+      }
+      Path patchFile = patchDir.resolve(path + "." + fromHash.substring(0, 16) + ".patch");
+      Files.createDirectories(patchFile.getParent());
+      try (OutputStream out = Files.newOutputStream(patchFile)) {
+        diff(Files.readAllBytes(oldFile), Files.readAllBytes(newFile), out);
+      }
+      // 补丁比完整文件还大时没有意义
+      if (Files.size(patchFile) >= Files.size(newFile)) {
+        Files.delete(patchFile);
+        continue;
+      }
+      Patch patch = new Patch();
+      patch.setPath(newDir.relativize(patchFile).toString().replace('\\', '/'));
+      patch.setSize(Files.size(patchFile));
+      patch.setHash(HashUtils.sha256(patchFile));
+      patch.setFromHash(fromHash);
+      patch.setFromVersion(fromVersion);
+      patches.put(path, patch);
+      log.log(Level.INFO, "生成补丁: {0} -> {1} ({2} bytes)", new Object[]{path, patch.getPath(), patch.getSize()});
+    }
+    if (manifest != null) {
+      writeManifest(manifest, newDir, patches);
+    }
+    return patches;
+  }
+
+  /**
+   * 将补丁写入配置文件对应资源中，同时补全资源的摘要，补丁需要通过摘要校验。
+   * JSON 配置通常是手工编辑的，按缩进格式写回
+   *
+   * @param manifestFile 配置文件
+   * @param newDir       新版本目录
+   * @param patches      补丁
+   * @throws IOException 读写失败
+   */
+  private static void writeManifest(Path manifestFile, Path newDir, Map<String, Patch> patches) throws IOException {
+    Manifest manifest = Manifest.load(manifestFile.toUri());
+    for (Resource resource : manifest.getResources()) {
+      Patch patch = patches.get(resource.getPath());
+      if (patch == null) {
+        continue;
+      }
+      if (resource.getHash() == null || resource.getHash().isBlank()) {
+        resource.setHash(HashUtils.sha256(newDir.resolve(resource.getPath())));
+      }
+      List<Patch> resourcePatches = resource.getPatches() == null ? new ArrayList<>() : new ArrayList<>(resource.getPatches());
+      resourcePatches.removeIf(exists -> exists.getFromHash() != null && exists.getFromHash().equals(patch.getFromHash()));
+      resourcePatches.add(patch);
+      resource.setPatches(resourcePatches);
+    }
+    if (BinaryManifest.isBinary(manifestFile.getFileName().toString(), null)) {
+      manifest.write(manifestFile);
+    } else {
+      Files.writeString(manifestFile, new GsonBuilder().setPrettyPrinting().create().toJson(manifest));
+    }
+  }
+
+  /**
+   * 生成补丁
+   *
+   * @param args 旧版本目录 新版本目录 [配置文件] [旧版本号]
+   * @throws IOException 读写失败
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("用法: DeltaPatch <旧版本目录> <新版本目录> [配置文件] [旧版本号]");
+      return;
+    }
+    Path manifest = args.length > 2 ? Path.of(args[2]) : null;
+    String fromVersion = args.length > 3 ? args[3] : null;
+    Map<String, Patch> patches = generate(Path.of(args[0]), Path.of(args[1]), manifest, fromVersion);
+    patches.forEach((path, patch) -> System.out.printf("%s -> %s (%d bytes)%n", path, patch.getPath(), patch.getSize()));
+    System.out.printf("共生成 %d 个补丁%n", patches.size());
+  }
+
+  /**
+   * 写入 INSERT 指令
+   *
+   * @param data    补丁输出
+   * @param newData 新文件内容
+   * @param from    起始位置
+   * @param to      结束位置
+   * @throws IOException 写入失败
+   */
+  private static void writeInsert(DataOutputStream data, byte[] newData, int from, int to) throws IOException {
+    if (to > from) {
+      data.writeByte(OP_INSERT);
+      data.writeInt(to - from);
+      data.write(newData, from, to - from);
+    }
+  }
+
+  /**
+   * 按块索引旧文件，相同哈希只保留第一个位置
+   *
+   * @param oldData 旧文件内容
+   * @return 块哈希 -> 位置
+   */
+  private static Map<Integer, Integer> indexBlocks(byte[] oldData) {
+    Map<Integer, Integer> blocks = new HashMap<>(Math.max(16, oldData.length / BLOCK * 2));
+    for (int position = 0; position + BLOCK <= oldData.length; position += BLOCK) {
+      blocks.putIfAbsent(hash(oldData, position), position);
+    }
+    return blocks;
+  }
+
+  /**
+   * 块的多项式哈希
+   *
+   * @param data   数据
+   * @param offset 块起始位置
+   * @return 哈希
+   */
+  private static int hash(byte[] data, int offset) {
+    int hash = 0;
+    for (int i = 0; i < BLOCK; i++) {
+      hash = hash * PRIME + data[offset + i];
+    }
+    return hash;
+  }
+
+  /**
+   * PRIME ^ (BLOCK - 1)，滚动时移出首字节使用
+   *
+   * @return 幂
+   */
+  private static int power() {
+    int power = 1;
+    for (int i = 1; i < BLOCK; i++) {
+      power *= PRIME;
+    }
+    return power;
+  }
+}
@@ -0,0 +1,574 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+
+/**
+ * 资源并发下载调度器
+ * <p>
+ * 同时下载多个资源到更新事务的暂存目录，并限制总并发数与单个主机的连接数，任意一个资源下载失败会取消其余下载
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/02 20:15
+ */
+@Log
+public class DownloadScheduler {
+  /**
+   * 默认并发数
+   */
+  public static final int DEFAULT_PARALLELISM = 4;
+  /**
+   * 服务端繁忙时的默认重试次数
+   */
+  public static final int DEFAULT_BUSY_RETRIES = 3;
+  /**
+   * 单个文件默认的最多分段数
+   */
+  public static final int DEFAULT_SEGMENTS = 4;
+  /**
+   * 默认的分段下载最小文件大小
+   */
+  public static final long DEFAULT_SEGMENT_THRESHOLD = 32L << 20;
+  /**
+   * 补丁文件后缀
+   */
+  private static final String PATCH_SUFFIX = ".patch";
+  /**
+   * 服务端繁忙且没有 Retry-After 时的首次等待时间，之后每次翻倍
+   */
+  private static final long BACKOFF_BASE_MILLIS = 1000;
+  /**
+   * 退避等待的最长时间
+   */
+  private static final long BACKOFF_MAX_MILLIS = 60_000;
+  /**
+   * Retry-After 的最长等待时间，避免错误的响应头让启动器长时间挂起
+   */
+  private static final long RETRY_AFTER_MAX_MILLIS = 300_000;
+  /**
+   * 结束时等待下载线程退出的最长时间，保证返回后不再有线程写暂存目录
+   */
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+  /**
+   * 资源服务器镜像
+   */
+  private MirrorSelector mirrors;
+  /**
+   * 同时下载的资源数
+   */
+  private final int parallelism;
+  /**
+   * 单个主机的最大连接数
+   */
+  private final int hostConnections;
+  /**
+   * 本地文件索引，用于查找适用的补丁
+   */
+  private final FileIndex fileIndex;
+  /**
+   * 本地已安装的版本
+   */
+  private final String installedVersion;
+  /**
+   * 资源仓库，为空则不启用
+   */
+  private ResourceStore store;
+  /**
+   * 启动耗时记录，为空则不记录
+   */
+  private StartupTimeline timeline;
+  /**
+   * 总速度限制，为空则不限速
+   */
+  private TokenBucket bandwidth;
+  /**
+   * 单个资源的速度上限，为空则不限速
+   */
+  private Long resourceBandwidth;
+  /**
+   * 是否根据响应延迟调整并发数
+   */
+  private boolean adaptive;
+  /**
+   * 服务端繁忙时的重试次数
+   */
+  private int busyRetries = DEFAULT_BUSY_RETRIES;
+  /**
+   * 单个文件的最多分段数
+   */
+  private int segments = DEFAULT_SEGMENTS;
+  /**
+   * 分段下载的最小文件大小
+   */
+  private long segmentThreshold = DEFAULT_SEGMENT_THRESHOLD;
+  /**
+   * 并发限制，每次下载时创建
+   */
+  private AdaptiveLimiter limiter;
+  /**
+   * 主机的连接许可
+   */
+  private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+  /**
+   * 是否已经取消
+   */
+  private volatile boolean cancelled;
+
+  /**
+   * 下载调度器
+   *
+   * @param baseUrl          资源服务器地址，配置了多个镜像时通过 {@link #setMirrors(MirrorSelector)} 替换
+   * @param parallelism      同时下载的资源数
+   * @param hostConnections  单个主机的最大连接数
+   * @param fileIndex        本地文件索引
+   * @param installedVersion 本地已安装的版本
+   */
+  public DownloadScheduler(String baseUrl, int parallelism, int hostConnections, FileIndex fileIndex, String installedVersion) {
+    this.mirrors = new MirrorSelector(List.of(baseUrl), null);
+    this.fileIndex = fileIndex;
+    this.installedVersion = installedVersion;
+    this.parallelism = Math.max(1, parallelism);
+    this.hostConnections = Math.max(1, Math.min(hostConnections, this.parallelism));
+  }
+
+  /**
+   * 设置资源仓库，仓库中已有的文件不再下载，下载完成的文件加入仓库
+   *
+   * @param store 资源仓库
+   */
+  public void setStore(ResourceStore store) {
+    this.store = store;
+  }
+
+  /**
+   * 设置启动耗时记录，记录每个资源的下载耗时
+   *
+   * @param timeline 启动耗时记录
+   */
+  public void setTimeline(StartupTimeline timeline) {
+    this.timeline = timeline;
+  }
+
+  /**
+   * 设置资源服务器镜像，下载分散到响应快的镜像上，某个镜像出错时从其他镜像续传
+   *
+   * @param mirrors 镜像
+   */
+  public void setMirrors(MirrorSelector mirrors) {
+    this.mirrors = mirrors;
+  }
+
+  /**
+   * 设置限速，多台机器同时更新时避免占满出口带宽或压垮资源服务器
+   *
+   * @param bandwidth         总速度限制，为空则不限速
+   * @param resourceBandwidth 单个资源的速度上限（bytes/s），为空则不限速
+   */
+  public void setBandwidth(TokenBucket bandwidth, Long resourceBandwidth) {
+    this.bandwidth = bandwidth;
+    this.resourceBandwidth = resourceBandwidth;
+  }
+
+  /**
+   * 设置是否根据响应延迟与服务端繁忙自动调整并发数，最大不超过 parallelism
+   *
+   * @param adaptive 是否自适应
+   */
+  public void setAdaptive(boolean adaptive) {
+    this.adaptive = adaptive;
+  }
+
+  /**
+   * 设置服务端繁忙（429/503）时单个资源的重试次数
+   *
+   * @param busyRetries 重试次数
+   */
+  public void setBusyRetries(int busyRetries) {
+    this.busyRetries = Math.max(0, busyRetries);
+  }
+
+  /**
+   * 设置大文件的分段下载，服务端支持 Range 时一个文件使用多个连接同时下载
+   *
+   * @param segments  最多的分段数，不大于 1 不分段
+   * @param threshold 分段下载的最小文件大小
+   */
+  public void setSegmentation(int segments, long threshold) {
+    this.segments = segments;
+    this.segmentThreshold = threshold;
+  }
+
+  /**
+   * 下载资源到事务的暂存目录，阻塞直到全部完成或者其中一个失败
+   *
+   * @param transaction 更新事务
+   * @param resources   需要下载的资源
+   * @param stats       下载统计
+   */
+  public void download(UpdateTransaction transaction, List<Resource> resources, DownloadStats stats) {
+    try {
+      downloadAll(transaction, resources, stats);
+    } finally {
+      stats.finish();
+      log.log(Level.INFO, "下载缓冲区: {0}", BufferPool.metrics());
+    }
+  }
+
+  /**
+   * 下载全部资源
+   *
+   * @param transaction 更新事务
+   * @param resources   需要下载的资源
+   * @param stats       下载统计
+   */
+  private void downloadAll(UpdateTransaction transaction, List<Resource> resources, DownloadStats stats) {
+    stats.start(resources.stream().mapToLong(Resource::transferLength).sum(), resources.size());
+    // 上次中断时已经暂存完成的文件直接计入进度
+    List<Resource> pending = new ArrayList<>(resources.size());
+    for (Resource resource : resources) {
+      LauncherEvents.ResourceDownload event = LauncherEvents.ENABLED ? new LauncherEvents.ResourceDownload() : null;
+      if (event != null) {
+        event.begin();
+      }
+      boolean cached = true;
+      if (transaction.isStaged(resource)) {
+        log.log(Level.INFO, "复用已暂存的文件: {0}", resource.getPath());
+        stats.transferred(resource.transferLength());
+        stats.fileCompleted();
+      } else if (store != null && store.materialize(resource, transaction.stagedPath(resource))) {
+        log.log(Level.INFO, "复用仓库中的文件: {0}", resource.getPath());
+        transaction.staged(resource, resource.getHash());
+        stats.transferred(resource.transferLength());
+        stats.fileCompleted();
+      } else {
+        pending.add(resource);
+        cached = false;
+      }
+      if (event != null) {
+        event.end();
+        if (cached && event.shouldCommit()) {
+          event.path = resource.getPath();
+          event.cached = true;
+          event.commit();
+        }
+      }
+    }
+    resources = pending;
+    if (resources.isEmpty()) {
+      return;
+    }
+    limiter = new AdaptiveLimiter(parallelism, adaptive);
+    AtomicInteger threadIndex = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, resources.size()), r -> {
+      Thread thread = new Thread(r, "Launcher-Download-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    ExecutorCompletionService<Resource> completionService = new ExecutorCompletionService<>(executor);
+    List<Future<Resource>> futures = new ArrayList<>(resources.size());
+    try {
+      for (Resource resource : resources) {
+        futures.add(completionService.submit(() -> {
+          downloadResource(transaction, resource, stats);
+          return resource;
+        }));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        Resource resource = completionService.take().get();
+        log.log(Level.INFO, "更新完成: {0}", resource.getPath());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancel(futures);
+      throw new LauncherException("下载被中断", e);
+    } catch (ExecutionException e) {
+      cancel(futures);
+      throw new LauncherException("下载资源失败", e.getCause());
+    } finally {
+      executor.shutdownNow();
+      awaitTermination(executor);
+    }
+  }
+
+  /**
+   * 等待下载线程退出，超时只记录日志，期间被中断则保留中断状态
+   *
+   * @param executor 已关闭的线程池
+   */
+  private static void awaitTermination(ExecutorService executor) {
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        log.warning("等待下载线程退出超时");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * 下载单个资源，失败时保留未完成的部分用于下次续传
+   *
+   * @param transaction 更新事务
+   * @param resource    资源
+   * @param stats       下载统计
+   * @throws IOException          下载失败
+   * @throws InterruptedException 下载被取消
+   */
+  private void downloadResource(UpdateTransaction transaction, Resource resource, DownloadStats stats) throws IOException, InterruptedException {
+    Path stagedPath = transaction.stagedPath(resource);
+    AtomicReference<URL> source = new AtomicReference<>();
+    stats.fileStarted(resource);
+    LauncherEvents.ResourceDownload event = LauncherEvents.ENABLED ? new LauncherEvents.ResourceDownload() : null;
+    if (event != null) {
+      event.begin();
+    }
+    AtomicLong transferred = new AtomicLong();
+    boolean patched = false;
+    try (StartupTimeline.Span ignored = timeline == null ? null : timeline.begin("download:" + resource.getPath())) {
+      patched = applyPatch(transaction, resource, transferred::addAndGet);
+      if (patched) {
+        stats.transferred(resource.transferLength());
+      } else {
+        String hash = fetch(resource, stagedPath, source, read -> {
+          transferred.addAndGet(read);
+          stats.transferred(read);
+        });
+        transaction.staged(resource, hash);
+      }
+      if (store != null) {
+        store.add(stagedPath, resource.getHash());
+      }
+      stats.fileCompleted();
+    } finally {
+      if (event != null) {
+        event.end();
+        if (event.shouldCommit()) {
+          event.path = resource.getPath();
+          event.url = source.get() == null ? null : source.get().toString();
+          event.bytes = transferred.get();
+          event.patched = patched;
+          event.commit();
+        }
+      }
+    }
+  }
+
+  /**
+   * 尝试下载补丁并基于本地文件生成新版本，任何失败都退回完整下载
+   *
+   * @param transaction 更新事务
+   * @param resource    资源
+   * @param transferred 补丁下载的字节数回调
+   * @return true 补丁应用成功
+   * @throws InterruptedException 下载被取消，不退回完整下载
+   */
+  private boolean applyPatch(UpdateTransaction transaction, Resource resource, LongConsumer transferred) throws InterruptedException {
+    if (resource.getPatches() == null || resource.getPatches().isEmpty()) {
+      return false;
+    }
+    Path localPath = resource.toLocalPath();
+    Path stagedPath = transaction.stagedPath(resource);
+    Path patchFile = stagedPath.resolveSibling(stagedPath.getFileName() + PATCH_SUFFIX);
+    try {
+      BasicFileAttributes attributes = FileIndex.attributes(localPath);
+      if (attributes == null) {
+        return false;
+      }
+      String localHash = fileIndex == null ? HashUtils.sha256(localPath) : fileIndex.hash(localPath, attributes);
+      Patch patch = resource.findPatch(localHash, installedVersion);
+      if (patch == null) {
+        return false;
+      }
+      Resource patchResource = patch.toResource();
+      fetch(patchResource, patchFile, new AtomicReference<>(), transferred);
+      MessageDigest digest = HashUtils.newDigest();
+      try (InputStream in = Files.newInputStream(patchFile); OutputStream out = new DigestOutputStream(Files.newOutputStream(stagedPath), digest)) {
+        DeltaPatch.apply(localPath, in, out);
+      }
+      String hash = HashUtils.toHex(digest.digest());
+      if (!HashUtils.matches(resource.getHash(), hash)) {
+        throw new LauncherException(String.format("补丁结果校验失败: %s [expected=%s, actual=%s]", resource.getPath(), resource.getHash(), hash));
+      }
+      transaction.staged(resource, hash);
+      log.log(Level.INFO, "通过补丁更新: {0} ({1} bytes)", new Object[]{resource.getPath(), patch.getSize()});
+      return true;
+    } catch (CancellationException | InterruptedException e) {
+      throw e;
+    } catch (Exception e) {
+      log.log(Level.WARNING, "补丁更新失败，使用完整下载: " + resource.getPath(), e);
+      try {
+        Files.deleteIfExists(stagedPath);
+      } catch (IOException ignored) {
+        // 完整下载会覆盖
+      }
+      return false;
+    } finally {
+      try {
+        Files.deleteIfExists(patchFile);
+      } catch (IOException ignored) {
+        // 暂存目录提交后会整体删除
+      }
+    }
+  }
+
+  /**
+   * 在并发限制内从镜像下载。镜像出错时换一个镜像续传，全部镜像都失败才算失败；
+   * 服务端繁忙时优先换到其他镜像，没有其他镜像时按 Retry-After 或指数退避等待后续传。
+   * 分段下载的每个连接同样占用一个主机连接与一个并发许可，分段数不超过当时空闲的许可数
+   *
+   * @param resource 资源
+   * @param target   保存位置
+   * @param source   实际使用的下载地址
+   * @param progress 进度回调
+   * @return 下载文件的摘要
+   * @throws IOException          全部镜像都失败或超过重试次数
+   * @throws InterruptedException 下载被取消
+   */
+  private String fetch(Resource resource, Path target, AtomicReference<URL> source, LongConsumer progress) throws IOException, InterruptedException {
+    TokenBucket resourceBucket = TokenBucket.of(resourceBandwidth);
+    // 换镜像续传时已有部分会再回调一次，只上报超过之前进度的部分
+    AtomicLong reported = new AtomicLong();
+    AtomicLong attemptTotal = new AtomicLong();
+    LongConsumer monotonic = read -> {
+      long total = attemptTotal.addAndGet(read);
+      long previous = reported.get();
+      if (total > previous) {
+        reported.set(total);
+        progress.accept(total - previous);
+      }
+    };
+    Set<MirrorSelector.Mirror> failed = new HashSet<>();
+    for (int busy = 0; ; ) {
+      MirrorSelector.Mirror mirror = mirrors.acquire(failed);
+      URL url = resource.toUrl(mirror.getUrl());
+      source.set(url);
+      Semaphore permits = hostPermits.computeIfAbsent(url.getHost() + ":" + url.getPort(), host -> new Semaphore(hostConnections));
+      ResourceDownloader downloader = new ResourceDownloader(resource, url, target);
+      downloader.setBandwidth(bandwidth, resourceBucket);
+      attemptTotal.set(0);
+      try {
+        permits.acquire();
+        try {
+          limiter.acquire();
+          int extra = acquireSegments(resource, permits);
+          try {
+            downloader.setSegmentation(extra + 1, segmentThreshold);
+            long start = System.nanoTime();
+            String hash = downloader.download(monotonic, () -> cancelled);
+            long latency = downloader.getResponseNanos();
+            limiter.onSuccess(latency);
+            mirrors.success(mirror, latency, downloader.getReceivedBytes(), System.nanoTime() - start - latency);
+            return hash;
+          } finally {
+            for (int i = 0; i < extra; i++) {
+              limiter.release();
+              permits.release();
+            }
+            limiter.release();
+          }
+        } finally {
+          permits.release();
+        }
+      } catch (ResourceDownloader.ServerBusyException e) {
+        long delay = retryDelay(e.getRetryAfterMillis(), busy);
+        mirrors.failure(mirror, delay);
+        failed.add(mirror);
+        if (failed.size() < mirrors.size()) {
+          log.log(Level.WARNING, "{0}，切换镜像", e.getMessage());
+          continue;
+        }
+        if (busy++ >= busyRetries) {
+          throw e;
+        }
+        log.log(Level.WARNING, "{0}，{1} ms 后重试", new Object[]{e.getMessage(), delay});
+        limiter.onBusy(delay);
+        failed.clear();
+      } catch (IOException | LauncherException e) {
+        mirrors.failure(mirror, 0);
+        failed.add(mirror);
+        if (failed.size() >= mirrors.size()) {
+          throw e;
+        }
+        log.log(Level.WARNING, "镜像下载失败，切换镜像续传: " + url, e);
+      } finally {
+        mirrors.release(mirror);
+      }
+    }
+  }
+
+  /**
+   * 为分段下载额外获取空闲的主机连接与并发许可，不等待
+   *
+   * @param resource 资源
+   * @param permits  主机连接许可
+   * @return 额外获取的数量，分段数为其加 1
+   */
+  private int acquireSegments(Resource resource, Semaphore permits) {
+    if (segments <= 1 || resource.getEncoding() != null || resource.getSize() == null || resource.getSize() < segmentThreshold) {
+      return 0;
+    }
+    int extra = 0;
+    while (extra < segments - 1 && permits.tryAcquire()) {
+      if (!limiter.tryAcquire()) {
+        permits.release();
+        break;
+      }
+      extra++;
+    }
+    return extra;
+  }
+
+  /**
+   * 计算重试前的等待时间，优先使用服务端的 Retry-After，否则指数退避并加上随机抖动，避免大量客户端同时重试
+   *
+   * @param retryAfterMillis 服务端要求的等待时间，没有为 -1
+   * @param attempt          已重试的次数
+   * @return 毫秒
+   */
+  private static long retryDelay(long retryAfterMillis, int attempt) {
+    if (retryAfterMillis >= 0) {
+      return Math.min(retryAfterMillis, RETRY_AFTER_MAX_MILLIS);
+    }
+    long backoff = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt, 16));
+    return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+  }
+
+  /**
+   * 取消其余下载
+   *
+   * @param futures 下载任务
+   */
+  private void cancel(List<Future<Resource>> futures) {
+    cancelled = true;
+    futures.forEach(future -> future.cancel(true));
+  }
+}
@@ -0,0 +1,188 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 下载统计
+ * <p>
+ * 下载线程只做原子累加，界面按帧读取快照，下载速度为按时间加权的指数移动平均，避免单次采样抖动导致剩余时间跳变
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/26 20:05
+ */
+public class DownloadStats {
+  /**
+   * 两次速度采样的最小间隔
+   */
+  private static final long SAMPLE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+  /**
+   * 移动平均的时间常数，越大越平滑
+   */
+  private static final double SMOOTHING_NANOS = TimeUnit.SECONDS.toNanos(3);
+  /**
+   * 已下载的字节数
+   */
+  private final AtomicLong downloadedBytes = new AtomicLong();
+  /**
+   * 已完成的文件数
+   */
+  private final AtomicInteger completedFiles = new AtomicInteger();
+  /**
+   * 总字节数
+   */
+  private volatile long totalBytes;
+  /**
+   * 总文件数
+   */
+  private volatile int totalFiles;
+  /**
+   * 最近开始下载的文件
+   */
+  private volatile String currentFile;
+  /**
+   * 是否已结束
+   */
+  private volatile boolean finished;
+  /**
+   * 上次采样时间，由 snapshot 维护
+   */
+  private long sampleTime = -1;
+  /**
+   * 上次采样时的字节数
+   */
+  private long sampleBytes;
+  /**
+   * 平均速度 bytes/s，小于 0 表示还没有采样
+   */
+  private double speed = -1;
+
+  /**
+   * 开始下载
+   *
+   * @param totalBytes 总字节数
+   * @param totalFiles 总文件数
+   */
+  public void start(long totalBytes, int totalFiles) {
+    this.totalBytes = totalBytes;
+    this.totalFiles = totalFiles;
+  }
+
+  /**
+   * 开始下载文件
+   *
+   * @param resource 资源
+   */
+  public void fileStarted(Resource resource) {
+    currentFile = resource.getPath();
+  }
+
+  /**
+   * 累加已下载的字节数
+   *
+   * @param bytes 字节数
+   */
+  public void transferred(long bytes) {
+    downloadedBytes.addAndGet(bytes);
+  }
+
+  /**
+   * 文件下载完成
+   */
+  public void fileCompleted() {
+    completedFiles.incrementAndGet();
+  }
+
+  /**
+   * 下载结束，无论成功与否
+   */
+  public void finish() {
+    finished = true;
+  }
+
+  /**
+   * 获取当前状态，距离上次采样超过采样间隔时更新平均速度
+   *
+   * @return 快照
+   */
+  public synchronized Snapshot snapshot() {
+    long now = System.nanoTime();
+    long bytes = downloadedBytes.get();
+    if (sampleTime < 0) {
+      sampleTime = now;
+      sampleBytes = bytes;
+    } else if (now - sampleTime >= SAMPLE_INTERVAL) {
+      long elapsed = now - sampleTime;
+      double rate = (bytes - sampleBytes) * 1e9 / elapsed;
+      double alpha = 1 - Math.exp(-elapsed / SMOOTHING_NANOS);
+      speed = speed < 0 ? rate : speed + alpha * (rate - speed);
+      sampleTime = now;
+      sampleBytes = bytes;
+    }
+    long total = totalBytes;
+    long eta = speed > 0 ? (long) Math.ceil(Math.max(0, total - bytes) / speed) : -1;
+    return new Snapshot(bytes, total, Math.max(0, speed), eta, currentFile, completedFiles.get(), totalFiles, finished);
+  }
+
+  /**
+   * 下载状态快照
+   */
+  @Getter
+  @RequiredArgsConstructor
+  public static class Snapshot {
+    /**
+     * 已下载的字节数
+     */
+    private final long downloadedBytes;
+    /**
+     * 总字节数
+     */
+    private final long totalBytes;
+    /**
+     * 平均速度 bytes/s
+     */
+    private final double bytesPerSecond;
+    /**
+     * 预计剩余秒数，未知为 -1
+     */
+    private final long etaSeconds;
+    /**
+     * 最近开始下载的文件
+     */
+    private final String currentFile;
+    /**
+     * 已完成的文件数
+     */
+    private final int completedFiles;
+    /**
+     * 总文件数
+     */
+    private final int totalFiles;
+    /**
+     * 是否已结束
+     */
+    private final boolean finished;
+
+    /**
+     * 总进度
+     *
+     * @return 0-1
+     */
+    public double getProgress() {
+      return totalBytes <= 0 ? 0 : Math.min(1, (double) downloadedBytes / totalBytes);
+    }
+
+    /**
+     * 剩余文件数
+     *
+     * @return 剩余文件数
+     */
+    public int getRemainingFiles() {
+      return Math.max(0, totalFiles - completedFiles);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * 本地文件状态索引
+ * <p>
+ * 记录文件的路径、大小、修改时间与摘要，只有大小或修改时间变化时才重新计算摘要
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/04 10:48
+ */
+@Log
+public class FileIndex {
+  /**
+   * 索引文件名
+   */
+  public static final String FILE_NAME = "file-index.json";
+  /**
+   * 文件路径 -> 文件状态
+   */
+  private ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  /**
+   * 索引文件位置
+   */
+  private transient Path file;
+  /**
+   * 是否有改动未保存
+   */
+  private transient volatile boolean dirty;
+
+  /**
+   * 加载索引，索引不存在或损坏时返回空索引
+   *
+   * @param file 索引文件
+   * @return 索引
+   */
+  public static FileIndex load(Path file) {
+    FileIndex index = null;
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        index = Manifest.GSON.fromJson(reader, FileIndex.class);
+      } catch (Exception e) {
+        log.log(Level.WARNING, "文件索引损坏，将重新建立: " + file, e);
+      }
+    }
+    if (index == null || index.entries == null) {
+      index = new FileIndex();
+    }
+    index.file = file;
+    return index;
+  }
+
+  /**
+   * 获取文件摘要，大小与修改时间未变时直接使用索引中的摘要
+   *
+   * @param path       文件
+   * @param attributes 文件属性
+   * @return 十六进制摘要
+   * @throws IOException 读取失败
+   */
+  public String hash(Path path, BasicFileAttributes attributes) throws IOException {
+    String key = key(path);
+    long mtime = attributes.lastModifiedTime().toMillis();
+    Entry entry = entries.get(key);
+    if (entry != null && entry.getSize() == attributes.size() && entry.getMtime() == mtime && entry.getHash() != null) {
+      return entry.getHash();
+    }
+    String hash = HashUtils.sha256(path);
+    entries.put(key, new Entry(key, attributes.size(), mtime, hash));
+    dirty = true;
+    return hash;
+  }
+
+  /**
+   * 记录已知摘要的文件，如下载时已经校验过的文件，避免下次启动重新计算
+   *
+   * @param path 文件
+   * @param hash 摘要
+   * @throws IOException 读取属性失败
+   */
+  public void update(Path path, String hash) throws IOException {
+    String key = key(path);
+    if (hash == null) {
+      entries.remove(key);
+    } else {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      entries.put(key, new Entry(key, attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+    }
+    dirty = true;
+  }
+
+  /**
+   * 移除文件的状态
+   *
+   * @param path 文件
+   */
+  public void remove(Path path) {
+    if (entries.remove(key(path)) != null) {
+      dirty = true;
+    }
+  }
+
+  /**
+   * 保存索引，没有改动时不写入
+   */
+  public synchronized void save() {
+    if (!dirty || file == null) {
+      return;
+    }
+    // 先清除标记，序列化期间其他线程的修改会重新标记，留到下次保存
+    dirty = false;
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.writeString(temp, Manifest.GSON.toJson(this));
+      ResourceDownloader.move(temp, file);
+    } catch (IOException e) {
+      dirty = true;
+      log.log(Level.WARNING, "保存文件索引失败: " + file, e);
+    }
+  }
+
+  /**
+   * 索引键
+   *
+   * @param path 文件
+   * @return 规范化的绝对路径
+   */
+  private static String key(Path path) {
+    return path.toAbsolutePath().normalize().toString();
+  }
+
+  /**
+   * 读取文件属性
+   *
+   * @param path 文件
+   * @return 属性，文件不存在返回 null
+   * @throws IOException 读取失败
+   */
+  public static BasicFileAttributes attributes(Path path) throws IOException {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * 文件状态
+   */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Entry {
+    /**
+     * 文件路径
+     */
+    private String path;
+    /**
+     * 文件大小
+     */
+    private long size;
+    /**
+     * 修改时间
+     */
+    private long mtime;
+    /**
+     * SHA-256
+     */
+    private String hash;
+  }
+}
@@ -0,0 +1,143 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 文件摘要工具
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/04 10:21
+ */
+@UtilityClass
+public class HashUtils {
+  /**
+   * 摘要算法
+   */
+  public static final String ALGORITHM = "SHA-256";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * 创建摘要器
+   *
+   * @return SHA-256 摘要器
+   */
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new LauncherException("不支持的摘要算法: " + ALGORITHM, e);
+    }
+  }
+
+  /**
+   * 计算文件的 SHA-256，使用池中的直接缓冲区流式读取。
+   * 不使用内存映射：JDK 11 无法主动解除映射，Windows 上映射中的文件在 GC 前不能被替换或删除，而计算摘要的文件随后往往就要被更新替换
+   *
+   * @param file 文件
+   * @return 十六进制摘要
+   * @throws IOException 读取失败
+   */
+  public static String sha256(Path file) throws IOException {
+    MessageDigest digest = newDigest();
+    LauncherEvents.HashVerify event = LauncherEvents.ENABLED ? new LauncherEvents.HashVerify() : null;
+    if (event != null) {
+      event.begin();
+    }
+    long size = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      size = channel.size();
+      ByteBuffer buffer = BufferPool.acquireDirect();
+      try {
+        while (channel.read(buffer) > -1) {
+          buffer.flip();
+          digest.update(buffer);
+          buffer.clear();
+        }
+      } finally {
+        BufferPool.release(buffer);
+      }
+    } finally {
+      if (event != null) {
+        event.end();
+        if (event.shouldCommit()) {
+          event.path = file.toString();
+          event.bytes = size;
+          event.commit();
+        }
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * 转为十六进制字符串
+   *
+   * @param bytes 字节
+   * @return 十六进制字符串
+   */
+  public static String toHex(byte[] bytes) {
+    char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+      chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * 解析小写十六进制字符串
+   *
+   * @param hex 十六进制字符串
+   * @return 字节，格式不是小写十六进制时返回 null
+   */
+  public static byte[] fromHex(String hex) {
+    if (hex.length() % 2 != 0) {
+      return null;
+    }
+    byte[] bytes = new byte[hex.length() / 2];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = hexDigit(hex.charAt(i * 2));
+      int low = hexDigit(hex.charAt(i * 2 + 1));
+      if (high < 0 || low < 0) {
+        return null;
+      }
+      bytes[i] = (byte) ((high << 4) | low);
+    }
+    return bytes;
+  }
+
+  /**
+   * 小写十六进制字符的值
+   *
+   * @param c 字符
+   * @return 值，不是小写十六进制字符返回 -1
+   */
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * 摘要是否一致，忽略大小写
+   *
+   * @param expected 期望的摘要
+   * @param actual   实际的摘要
+   * @return true 一致
+   */
+  public static boolean matches(String expected, String actual) {
+    return expected != null && expected.equalsIgnoreCase(actual);
+  }
+}
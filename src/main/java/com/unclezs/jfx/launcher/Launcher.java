@@ -2,6 +2,8 @@ package com.unclezs.jfx.launcher;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.paint.Color;
@@ -9,14 +11,16 @@ import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import lombok.extern.java.Log;
 
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.URL;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 启动器
@@ -38,10 +42,60 @@ public class Launcher extends Application {
    * 有新版本
    */
   public static final String HAS_NEW = "hasNew";
+  /**
+   * 后台更新已下载完成，下次启动生效，值为 {@link ReadOnlyBooleanProperty}
+   */
+  public static final String UPDATE_READY = "updateReady";
+  /**
+   * 启动耗时记录，值为 {@link StartupTimeline}
+   */
+  public static final String STARTUP_TIMELINE = "startupTimeline";
+  /**
+   * 启动耗时记录文件路径
+   */
+  public static final String STARTUP_TIMELINE_FILE = "startupTimelineFile";
+  /**
+   * 并发下载数参数名称
+   */
+  public static final String PARALLELISM_ARG_NAME = "parallelism";
   private Stage launcherStage;
   private Manifest manifest;
   private LauncherView ui;
+  private FileIndex fileIndex;
+  private Path localManifestPath;
+  /**
+   * 本地已安装的版本
+   */
+  private String installedVersion;
+  /**
+   * 本地配置是否为已安装的配置，首次启动时为内嵌配置
+   */
+  private boolean installed;
+  /**
+   * 阻塞更新时的更新计划
+   */
+  private UpdatePlan updatePlan;
+  /**
+   * 远程配置的缓存校验信息
+   */
+  private ManifestValidator manifestValidator;
   private boolean newVersion = true;
+  /**
+   * 后台更新是否已准备好
+   */
+  private final ReadOnlyBooleanWrapper updateReady = new ReadOnlyBooleanWrapper(false);
+  /**
+   * 启动耗时记录
+   */
+  private final StartupTimeline timeline = new StartupTimeline();
+  /**
+   * 文件预读，未启用为空
+   */
+  private Prefetcher prefetcher;
+  /**
+   * main 中已经解析的本地配置，init 中没有提交更新时直接复用，避免大配置在启动时解析两次
+   */
+  private static volatile Manifest preloadedManifest;
 
   /**
    * 入口
@@ -49,13 +103,31 @@ public class Launcher extends Application {
    * @param args 参数
    */
   public static void main(String[] args) {
+    // CDS 参数只能在 JVM 启动时指定，在初始化 JavaFX 之前决定是否带上参数重启，由子进程完成启动
+    Manifest local = applyParams(Manifest.embedded(), namedParams(args));
+    Path localManifest = local.localManifest();
+    if (Files.exists(localManifest)) {
+      local = Manifest.load(localManifest.toUri());
+      preloadedManifest = local;
+    }
+    if (Boolean.TRUE.equals(local.getAppCds())) {
+      OptionalInt exitCode = new AppCds(local).relaunch(Launcher.class, args);
+      if (exitCode.isPresent()) {
+        System.exit(exitCode.getAsInt());
+      }
+    }
     launch(args);
   }
 
   @Override
   public void init() {
     Thread.currentThread().setName("Launcher");
-    loadLocalManifest();
+    try (StartupTimeline.Span ignored = timeline.begin("manifest.local")) {
+      loadLocalManifest();
+    }
+    if (Boolean.TRUE.equals(manifest.getAppCds())) {
+      new AppCds(manifest).record();
+    }
     ui = new LauncherView(manifest);
     ui.setPhase("正在检测更新...");
   }
@@ -67,10 +139,21 @@ public class Launcher extends Application {
    */
   public void startApplication() throws Exception {
     // 检测升级
-    checkForUpgrade();
+    Manifest.UpdateMode updateMode = manifest.getUpdateMode() == null ? Manifest.UpdateMode.BLOCKING : manifest.getUpdateMode();
+    if (updateMode == Manifest.UpdateMode.BLOCKING) {
+      checkForUpgrade();
+    } else {
+      checkForUpgradeInBackground(updateMode);
+    }
     ui.setPhase("正在初始化运行环境...");
     ClassLoader loader = loadLibraries();
-    Class<?> appClass = loader.loadClass(manifest.getLaunchClass());
+    if (prefetcher != null) {
+      prefetcher.cancel();
+    }
+    Class<?> appClass;
+    try (StartupTimeline.Span ignored = timeline.begin("launchClass.load")) {
+      appClass = loader.loadClass(manifest.getLaunchClass());
+    }
     if (!Application.class.isAssignableFrom(appClass)) {
       handleStartError(new IllegalArgumentException("启动类必须为Application的子类..."));
       return;
@@ -78,13 +161,23 @@ public class Launcher extends Application {
     FxUtils.runFx(() -> {
       try {
         Application app = (Application) appClass.getConstructor().newInstance();
-        app.init();
+        try (StartupTimeline.Span ignored = timeline.begin("app.init")) {
+          app.init();
+        }
         Stage appStage = new Stage();
-        appStage.setUserData(Map.of(CHANGE_LOG_ARG_NAME, manifest.getChangeLog(), VERSION_ARG_NAME, manifest.getVersion(), HAS_NEW, newVersion));
+        Path timelineFile = manifest.localFile(StartupTimeline.FILE_NAME);
+        appStage.setUserData(Map.of(CHANGE_LOG_ARG_NAME, manifest.getChangeLog(), VERSION_ARG_NAME, manifest.getVersion(), HAS_NEW, newVersion,
+          UPDATE_READY, updateReady.getReadOnlyProperty(), STARTUP_TIMELINE, timeline, STARTUP_TIMELINE_FILE, timelineFile.toString()));
         ui.setPhase("正在启动应用...");
-        app.start(appStage);
+        try (StartupTimeline.Span ignored = timeline.begin("app.start")) {
+          app.start(appStage);
+        }
         launcherStage.close();
         launcherStage = null;
+        timeline.write(timelineFile);
+        if (prefetcher != null) {
+          prefetcher.save();
+        }
       } catch (Exception e) {
         handleStartError(e);
       }
@@ -97,11 +190,14 @@ public class Launcher extends Application {
     launcherStage.setResizable(false);
     launcherStage.setScene(new Scene(ui, Color.TRANSPARENT));
     launcherStage.initStyle(StageStyle.TRANSPARENT);
-    launcherStage.show();
+    try (StartupTimeline.Span ignored = timeline.begin("launcher.show")) {
+      launcherStage.show();
+    }
     if (!manifest.validate()) {
       handleStartError(new IllegalArgumentException("配置文件格式错误！！"));
       return;
     }
+    startPrefetch();
     //noinspection AlibabaAvoidManuallyCreateThread
     Thread startThread = new Thread(() -> {
       try {
@@ -114,16 +210,88 @@ public class Launcher extends Application {
     startThread.start();
   }
 
+  /**
+   * 在后台预读本地的 JAR 与本地库
+   */
+  private void startPrefetch() {
+    if (!Boolean.TRUE.equals(manifest.getPrefetch())) {
+      return;
+    }
+    List<Path> files = Stream.concat(manifest.resolveResources(Resource.Type.JAR).stream(), manifest.resolveResources(Resource.Type.NATIVE).stream())
+      .map(Resource::toLocalPath)
+      .collect(Collectors.toList());
+    prefetcher = Prefetcher.load(manifest.localFile(Prefetcher.FILE_NAME));
+    prefetcher.start(files);
+  }
+
   /**
    * 检测更新
    */
   private void checkForUpgrade() {
-    boolean hasNew = syncManifest();
-    if (hasNew) {
-      syncResources();
+    try {
+      boolean hasNew = syncManifest();
+      if (hasNew) {
+        syncResources();
+      }
+    } finally {
+      fileIndex.save();
     }
   }
 
+  /**
+   * 先使用本地版本启动应用，在后台检测并下载更新到暂存目录，下次启动时生效
+   *
+   * @param updateMode 更新方式
+   */
+  private void checkForUpgradeInBackground(Manifest.UpdateMode updateMode) {
+    this.newVersion = false;
+    UpdatePlan remote = null;
+    if (updateMode == Manifest.UpdateMode.BACKGROUND_UNLESS_MANDATORY) {
+      // 启动前只做一次条件请求检测配置，强制更新时仍然阻塞下载
+      try {
+        ui.setPhase("正在检测是否有新版本...");
+        remote = fetchUpdate();
+      } catch (Exception e) {
+        log.log(Level.SEVERE, "检测更新失败", e);
+      }
+      if (remote == null) {
+        return;
+      }
+      if (Boolean.TRUE.equals(remote.getTarget().getMandatory())) {
+        log.log(Level.INFO, "强制更新: {0}", remote.getTarget().getVersion());
+        this.newVersion = true;
+        try {
+          applyRemoteManifest(remote);
+          syncResources();
+        } finally {
+          fileIndex.save();
+        }
+        return;
+      }
+    }
+    final UpdatePlan checked = remote;
+    Thread updateThread = new Thread(() -> {
+      try {
+        UpdatePlan plan = checked == null ? fetchUpdate() : checked;
+        if (plan == null) {
+          return;
+        }
+        log.log(Level.INFO, "后台下载新版本: {0}", plan.getTarget().getVersion());
+        UpdateTransaction transaction = downloadUpdate(plan, new DownloadStats());
+        transaction.prepare(manifestValidator);
+        log.log(Level.INFO, "新版本已准备好，下次启动生效: {0}", plan.getTarget().getVersion());
+        FxUtils.runFx(() -> updateReady.set(true));
+      } catch (Exception e) {
+        // 后台更新失败不影响当前运行，已下载的文件下次更新时复用
+        log.log(Level.WARNING, "后台更新失败", e);
+      } finally {
+        fileIndex.save();
+      }
+    }, "Launcher-Update");
+    updateThread.setDaemon(true);
+    updateThread.start();
+  }
+
   /**
    * 同步manifest
    *
@@ -131,28 +299,14 @@ public class Launcher extends Application {
    */
   public boolean syncManifest() {
     try {
-      log.log(Level.INFO, "获取远程配置文件:{0}", manifest.remoteManifest());
       ui.setPhase("正在检测是否有新版本...");
-      Manifest remoteManifest = Manifest.load(manifest.remoteManifest());
-      if (!checkNew(remoteManifest)) {
+      UpdatePlan plan = fetchUpdate();
+      if (plan == null) {
         ui.setPhase(String.format("当前已是最新版本：%s", manifest.getVersion()));
         this.newVersion = false;
         return false;
       }
-      // 显示更新内容
-      ui.initUpdateView();
-      ui.setPhase(String.format("检测到新版本：%s", manifest.getVersion()));
-      Path localManifest = manifest.localManifest();
-      if (Files.notExists(localManifest)) {
-        Files.createDirectories(localManifest.getParent());
-      }
-      Files.writeString(manifest.localManifest(), remoteManifest.toJson());
-      manifest = remoteManifest;
-      // 显示更新内容
-      if (!manifest.getChangeLog().isEmpty()) {
-        log.log(Level.INFO, "更新内容:{0}", manifest.getChangeLog());
-        ui.setWhatNew(manifest.getChangeLog());
-      }
+      applyRemoteManifest(plan);
       return true;
     } catch (Exception e) {
       // 忽略更新失败
@@ -161,6 +315,59 @@ public class Launcher extends Application {
     return false;
   }
 
+  /**
+   * 获取远程配置并检测是否有新版本
+   *
+   * @return 有新版本返回更新计划，否则返回 null
+   */
+  private UpdatePlan fetchUpdate() {
+    URI remoteUri = manifest.remoteManifest();
+    log.log(Level.INFO, "获取远程配置文件:{0}", remoteUri);
+    manifestValidator = ManifestValidator.load(localManifestPath, remoteUri);
+    LauncherEvents.UpdateCheck event = LauncherEvents.ENABLED ? new LauncherEvents.UpdateCheck() : null;
+    if (event != null) {
+      event.begin();
+    }
+    Manifest remoteManifest;
+    try (StartupTimeline.Span ignored = timeline.begin("manifest.remote")) {
+      remoteManifest = Manifest.load(remoteUri, manifestValidator);
+    }
+    // 304 说明远程配置与上次同步时一致
+    UpdatePlan plan = remoteManifest == null ? null : planUpdate(remoteManifest);
+    boolean hasNew = plan != null && plan.hasChanges();
+    if (remoteManifest != null && !hasNew) {
+      manifestValidator.save();
+    }
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.localVersion = manifest.getVersion();
+        event.remoteVersion = remoteManifest == null ? null : remoteManifest.getVersion();
+        event.hasNew = hasNew;
+        event.commit();
+      }
+    }
+    return hasNew ? plan : null;
+  }
+
+  /**
+   * 切换到新版本配置并显示更新内容
+   *
+   * @param plan 更新计划
+   */
+  private void applyRemoteManifest(UpdatePlan plan) {
+    ui.initUpdateView();
+    ui.setPhase(String.format("检测到新版本：%s", manifest.getVersion()));
+    // 本地配置在资源全部下载完成后随更新事务一起提交
+    manifest = plan.getTarget();
+    updatePlan = plan;
+    // 显示更新内容
+    if (!manifest.getChangeLog().isEmpty()) {
+      log.log(Level.INFO, "更新内容:{0}", manifest.getChangeLog());
+      ui.setWhatNew(manifest.getChangeLog());
+    }
+  }
+
   /**
    * 加载本地 Manifest
    */
@@ -168,101 +375,201 @@ public class Launcher extends Application {
     log.info("解析本地配置文件");
     manifest = Manifest.embedded();
     // 解析参数覆盖嵌入的
-    parseParams();
-    Path localManifestPath = manifest.localManifest();
-    if (Files.exists(localManifestPath)) {
-      manifest = Manifest.load(localManifestPath.toUri());
+    manifest = applyParams(manifest, getParameters().getNamed());
+    fileIndex = FileIndex.load(manifest.localFile(FileIndex.FILE_NAME));
+    // 完成或回滚上次中断的更新，后台下载好的更新也在这里生效
+    localManifestPath = manifest.localManifest();
+    boolean committed = UpdateTransaction.recover(localManifestPath, fileIndex);
+    installed = Files.exists(localManifestPath);
+    Manifest preloaded = preloadedManifest;
+    preloadedManifest = null;
+    if (installed) {
+      // 提交了更新时本地配置已被替换，需要重新读取
+      manifest = preloaded != null && !committed ? preloaded : Manifest.load(localManifestPath.toUri());
+    }
+    if (committed) {
+      retainStore();
+      fileIndex.save();
     }
+    installedVersion = manifest.getVersion();
   }
 
   /**
    * 自定义Classloader加载依赖
    */
   private ClassLoader loadLibraries() {
-    List<Resource> resources = manifest.resolveResources();
-    // 本地库
-    resources.stream()
-      .filter(resource -> Resource.Type.NATIVE == resource.getType())
-      .map(resource -> Path.of(".", resource.getPath()).toFile().getAbsolutePath())
-      .forEach(System::load);
-    // 系统库
-    resources.stream()
-      .filter(resource -> Resource.Type.NATIVE_SYS == resource.getType())
-      .map(Resource::getPath)
-      .forEach(System::loadLibrary);
+    try (StartupTimeline.Span ignored = timeline.begin("native.load")) {
+      // 本地库
+      manifest.resolveResources(Resource.Type.NATIVE).stream()
+        .map(resource -> Path.of(".", resource.getPath()).toFile().getAbsolutePath())
+        .forEach(library -> loadNative(library, false));
+      // 系统库
+      manifest.resolveResources(Resource.Type.NATIVE_SYS).stream()
+        .map(Resource::getPath)
+        .forEach(library -> loadNative(library, true));
+    }
     // 加载依赖模块
-    Path[] modules = resources.stream()
-      .filter(resource -> Resource.Type.JAR == resource.getType())
+    Path[] modules = manifest.resolveResources(Resource.Type.JAR).stream()
       .map(Resource::toLocalPath)
       .toArray(Path[]::new);
-    ModuleLoader moduleLoader = new ModuleLoader(modules, manifest.getLaunchModule());
-    manifest.getModuleOptions().forEach(moduleLoader::add);
+    ModuleLoader moduleLoader;
+    try (StartupTimeline.Span ignored = timeline.begin("module.layer")) {
+      ModuleCache moduleCache = ModuleCache.load(manifest.localFile(ModuleCache.FILE_NAME));
+      if (prefetcher != null) {
+        moduleCache.setOpenListener(prefetcher::opened);
+      }
+      moduleLoader = new ModuleLoader(modules, manifest.getLaunchModule(), moduleCache);
+      moduleCache.save();
+      manifest.getModuleOptions().forEach(moduleLoader::add);
+    }
     ClassLoader classLoader = moduleLoader.getClassLoader();
     // 配置classloader
     FXMLLoader.setDefaultClassLoader(classLoader);
-    FxUtils.runAndWait(() -> Thread.currentThread().setContextClassLoader(classLoader));
+    // 之后启动应用的任务同样排在 FX 线程上，不需要等待
+    FxUtils.runFx(() -> Thread.currentThread().setContextClassLoader(classLoader));
     Thread.currentThread().setContextClassLoader(classLoader);
     return classLoader;
   }
 
+  /**
+   * 加载本地库
+   *
+   * @param library 库文件路径或系统库名称
+   * @param system  是否为系统库
+   */
+  private void loadNative(String library, boolean system) {
+    LauncherEvents.NativeLibraryLoad event = LauncherEvents.ENABLED ? new LauncherEvents.NativeLibraryLoad() : null;
+    if (event != null) {
+      event.begin();
+    }
+    if (system) {
+      System.loadLibrary(library);
+    } else {
+      if (prefetcher != null) {
+        prefetcher.opened(Path.of(library));
+      }
+      System.load(library);
+    }
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.library = library;
+        event.system = system;
+        event.commit();
+      }
+    }
+  }
+
   /**
    * 从远端同步文件到本地
    */
   private void syncResources() {
+    ui.setPhase("正在下载最新版本...");
     try {
-      ui.setPhase("正在下载最新版本...");
-      List<Resource> resources = manifest.resolveResources();
-      final long totalSize = resources.stream().filter(Resource::hasNew).mapToLong(Resource::getSize).sum();
-      ui.setProgress(0);
-      double current = 0;
-      for (Resource resource : resources) {
-        if (resource.hasNew()) {
-          Path localPath = resource.toLocalPath();
-          // 创建父目录
-          if (!Files.exists(localPath.getParent())) {
-            Files.createDirectories(localPath.getParent());
-          }
-          // 下载更新
-          URL url = resource.toUrl(manifest.getUrl());
-          try (InputStream in = url.openStream(); OutputStream out = Files.newOutputStream(localPath)) {
-            byte[] buffer = new byte[65536];
-            int read;
-            while ((read = in.read(buffer)) > -1) {
-              out.write(buffer, 0, read);
-              current += read;
-              ui.setProgress(current / totalSize);
-            }
-          }
-          log.log(Level.INFO, "更新完成: {0}", resource.getPath());
-        }
+      DownloadStats stats = new DownloadStats();
+      ui.showDownloadStats(stats);
+      UpdateTransaction transaction = downloadUpdate(updatePlan, stats);
+      try (StartupTimeline.Span ignored = timeline.begin("update.commit")) {
+        transaction.commit(fileIndex);
       }
+      // 本地配置已与远程一致，记录本次的校验信息
+      manifestValidator.save();
+      retainStore();
     } catch (Exception e) {
       throw new LauncherException("更新最新版本失败", e);
     }
   }
 
   /**
-   * 检测是否有新版本
+   * 按更新计划下载新版本中有变化的资源到暂存目录
+   *
+   * @param plan  更新计划
+   * @param stats 下载统计
+   * @return 更新事务，资源已全部暂存
+   */
+  private UpdateTransaction downloadUpdate(UpdatePlan plan, DownloadStats stats) {
+    Manifest target = plan.getTarget();
+    List<Resource> resources = plan.getDownloads();
+    int parallelism = resolveParallelism(target);
+    int hostConnections = target.getHostConnections() == null ? parallelism : target.getHostConnections();
+    log.log(Level.INFO, "开始下载 {0} 个资源，并发数: {1}", new Object[]{resources.size(), parallelism});
+    UpdateTransaction transaction = UpdateTransaction.begin(target, resources, plan.getRemoved(), localManifestPath);
+    DownloadScheduler scheduler = new DownloadScheduler(target.getUrl(), parallelism, hostConnections, fileIndex, installedVersion);
+    scheduler.setStore(ResourceStore.of(target.getStorePath(), fileIndex));
+    scheduler.setTimeline(timeline);
+    MirrorSelector mirrors = MirrorSelector.of(target, manifest.localFile(MirrorSelector.FILE_NAME));
+    mirrors.probe();
+    scheduler.setMirrors(mirrors);
+    scheduler.setBandwidth(TokenBucket.of(target.getBandwidthLimit()), target.getResourceBandwidthLimit());
+    scheduler.setAdaptive(Boolean.TRUE.equals(target.getAdaptiveParallelism()));
+    if (target.getBusyRetries() != null) {
+      scheduler.setBusyRetries(target.getBusyRetries());
+    }
+    scheduler.setSegmentation(target.getSegments() == null ? DownloadScheduler.DEFAULT_SEGMENTS : target.getSegments(),
+      target.getSegmentThreshold() == null ? DownloadScheduler.DEFAULT_SEGMENT_THRESHOLD : target.getSegmentThreshold());
+    try (StartupTimeline.Span ignored = timeline.begin("update.download")) {
+      scheduler.download(transaction, resources, stats);
+    } finally {
+      mirrors.save();
+    }
+    return transaction;
+  }
+
+  /**
+   * 记录当前安装在资源仓库中引用的文件，回收无用文件
+   */
+  private void retainStore() {
+    ResourceStore store = ResourceStore.of(manifest.getStorePath(), fileIndex);
+    if (store != null) {
+      store.retain(localManifestPath.toString(), manifest.resolveResources().stream().map(Resource::getHash).collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * 获取并发下载数，启动参数优先于配置文件
+   *
+   * @param target 配置
+   * @return 并发下载数
+   */
+  private int resolveParallelism(Manifest target) {
+    String param = getParameters().getNamed().get(PARALLELISM_ARG_NAME);
+    if (param != null && !param.isBlank()) {
+      try {
+        return Integer.parseInt(param.trim());
+      } catch (NumberFormatException e) {
+        log.log(Level.WARNING, "并发下载数参数格式错误: {0}", param);
+      }
+    }
+    if (target.getParallelism() != null) {
+      return target.getParallelism();
+    }
+    return DownloadScheduler.DEFAULT_PARALLELISM;
+  }
+
+  /**
+   * 比较本地与远程配置，生成更新计划
    *
    * @param remote 远程配置
-   * @return true 有
+   * @return 更新计划
    */
-  private boolean checkNew(Manifest remote) {
+  private UpdatePlan planUpdate(Manifest remote) {
     try {
-      if (!manifest.equals(remote)) {
-        return true;
-      }
-      return remote.resolveResources().stream().anyMatch(Resource::hasNew);
+      UpdatePlan plan = ManifestDiff.compare(manifest, remote, fileIndex, installed);
+      log.log(Level.INFO, "更新计划: {0}", plan);
+      return plan;
     } catch (Exception e) {
       throw new LauncherException("检测是否有新版本失败", e);
     }
   }
 
   /**
-   * 初始化启动参数
+   * 用启动参数覆盖配置
+   *
+   * @param manifest 配置，可为空
+   * @param params   命名参数
+   * @return 配置
    */
-  private void parseParams() {
-    Map<String, String> params = getParameters().getNamed();
+  private static Manifest applyParams(Manifest manifest, Map<String, String> params) {
     if (manifest == null) {
       manifest = new Manifest();
     }
@@ -273,6 +580,24 @@ public class Launcher extends Application {
     manifest.setLaunchModule(params.getOrDefault("launchModule", manifest.getLaunchModule()));
     manifest.setConfigPath(params.getOrDefault("configPath", manifest.getConfigPath()));
     manifest.setVersion(params.getOrDefault("version", manifest.getVersion()));
+    return manifest;
+  }
+
+  /**
+   * 按 JavaFX 的规则解析 --name=value 形式的命名参数，用于 JavaFX 启动之前
+   *
+   * @param args 启动参数
+   * @return 命名参数
+   */
+  private static Map<String, String> namedParams(String[] args) {
+    Map<String, String> params = new HashMap<>();
+    for (String arg : args) {
+      int index = arg.indexOf('=');
+      if (arg.startsWith("--") && index > 2) {
+        params.put(arg.substring(2, index), arg.substring(index + 1));
+      }
+    }
+    return params;
   }
 
   /**
@@ -0,0 +1,135 @@
+package com.unclezs.jfx.launcher;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 启动器的 JFR 事件
+ * <p>
+ * 使用方式统一为 begin -> 执行 -> end -> shouldCommit 时才填充字段并提交，未开启录制时 shouldCommit 直接返回 false，
+ * 不会产生额外开销。jdk.jfr 是可选依赖，运行时没有该模块时 {@link #ENABLED} 为 false，调用方不创建事件。
+ *
+ * <pre>
+ * java -XX:StartFlightRecording=filename=launcher.jfr ...
+ * </pre>
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/22 20:18
+ */
+public final class LauncherEvents {
+  /**
+   * 运行时是否有 jdk.jfr 模块，没有时不能加载任何事件类
+   */
+  public static final boolean ENABLED = ModuleLayer.boot().findModule("jdk.jfr").isPresent();
+  private static final String CATEGORY = "JFX Launcher";
+
+  private LauncherEvents() {
+  }
+
+  /**
+   * 获取配置文件
+   */
+  @Name("com.unclezs.jfx.launcher.ManifestFetch")
+  @Label("Manifest Fetch")
+  @Description("读取本地或远程配置文件")
+  @Category({CATEGORY, "Update"})
+  @StackTrace(false)
+  public static class ManifestFetch extends Event {
+    @Label("URI")
+    public String uri;
+    @Label("Status")
+    @Description("HTTP 状态码，本地文件为 0")
+    public int status;
+    @Label("Not Modified")
+    public boolean notModified;
+  }
+
+  /**
+   * 检测是否有新版本
+   */
+  @Name("com.unclezs.jfx.launcher.UpdateCheck")
+  @Label("Update Check")
+  @Category({CATEGORY, "Update"})
+  @StackTrace(false)
+  public static class UpdateCheck extends Event {
+    @Label("Local Version")
+    public String localVersion;
+    @Label("Remote Version")
+    public String remoteVersion;
+    @Label("Has New")
+    public boolean hasNew;
+  }
+
+  /**
+   * 下载单个资源
+   */
+  @Name("com.unclezs.jfx.launcher.ResourceDownload")
+  @Label("Resource Download")
+  @Category({CATEGORY, "Download"})
+  @StackTrace(false)
+  public static class ResourceDownload extends Event {
+    @Label("Path")
+    public String path;
+    @Label("URL")
+    public String url;
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+    @Label("From Cache")
+    @Description("从暂存目录或资源仓库取得，未发生网络传输")
+    public boolean cached;
+    @Label("Patched")
+    public boolean patched;
+  }
+
+  /**
+   * 计算文件摘要
+   */
+  @Name("com.unclezs.jfx.launcher.HashVerify")
+  @Label("Hash Verify")
+  @Category({CATEGORY, "File"})
+  @StackTrace(false)
+  public static class HashVerify extends Event {
+    @Label("Path")
+    public String path;
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+  }
+
+  /**
+   * 加载本地库
+   */
+  @Name("com.unclezs.jfx.launcher.NativeLibraryLoad")
+  @Label("Native Library Load")
+  @Category({CATEGORY, "Module"})
+  @StackTrace(false)
+  public static class NativeLibraryLoad extends Event {
+    @Label("Library")
+    public String library;
+    @Label("System")
+    @Description("是否为系统库")
+    public boolean system;
+  }
+
+  /**
+   * 解析并定义模块层
+   */
+  @Name("com.unclezs.jfx.launcher.ModuleLayerResolve")
+  @Label("Module Layer Resolve")
+  @Category({CATEGORY, "Module"})
+  @StackTrace(false)
+  public static class ModuleLayerResolve extends Event {
+    @Label("Root Module")
+    public String rootModule;
+    @Label("Module Path Entries")
+    public int modulePathEntries;
+    @Label("Resolved Modules")
+    public int resolvedModules;
+  }
+}
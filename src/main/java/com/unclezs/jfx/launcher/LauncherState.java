@@ -0,0 +1,44 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Value;
+import lombok.With;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 启动界面状态
+ * <p>
+ * 不可变对象，工作线程每次修改都生成新的状态交给界面，界面只显示最新的状态
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/27 20:16
+ */
+@Value
+@With
+public class LauncherState {
+  /**
+   * 初始状态
+   */
+  public static final LauncherState INITIAL = new LauncherState(null, false, Collections.emptyList(), null, null);
+  /**
+   * 当前阶段
+   */
+  String phase;
+  /**
+   * 是否显示更新界面
+   */
+  boolean updating;
+  /**
+   * 更新内容
+   */
+  List<String> whatNew;
+  /**
+   * 启动异常，不为空时显示错误界面
+   */
+  Throwable error;
+  /**
+   * 错误界面关闭按钮点击回调
+   */
+  Runnable closeHandler;
+}
@@ -1,5 +1,6 @@
 package com.unclezs.jfx.launcher;
 
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.css.PseudoClass;
@@ -14,10 +15,16 @@ import lombok.extern.java.Log;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 import java.util.logging.Level;
 
 /**
  * 启动UI界面
+ * <p>
+ * 工作线程只发布新的 {@link LauncherState}，不等待 FX 线程。FX 线程每次取最新的状态，与上次显示的状态比较后刷新变化的部分，
+ * 期间多次发布的状态只显示最后一次。
  *
  * @author blog.unclezs.com
  * @since 2021/03/26 15:48
@@ -34,6 +41,10 @@ public class LauncherView extends StackPane {
    */
   private static final PseudoClass UPDATING_PSEUDO_CLASS_STATE = PseudoClass.getPseudoClass("updating");
   private final Label phase = new Label();
+  /**
+   * 下载速度、剩余时间与当前文件
+   */
+  private final Label detail = new Label();
   private final StackPane messageView = new StackPane();
   private final StackPane progressView = new StackPane();
   private final Manifest manifest;
@@ -46,6 +57,22 @@ public class LauncherView extends StackPane {
    * 更新
    */
   private ReadOnlyBooleanWrapper updating;
+  /**
+   * 每帧刷新一次下载统计
+   */
+  private AnimationTimer statsTimer;
+  /**
+   * 最新发布的状态
+   */
+  private final AtomicReference<LauncherState> state = new AtomicReference<>(LauncherState.INITIAL);
+  /**
+   * 是否已经提交刷新任务
+   */
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+  /**
+   * 已显示的状态，只在 FX 线程访问
+   */
+  private LauncherState rendered = LauncherState.INITIAL;
 
   /**
    * 启动器
@@ -62,6 +89,7 @@ public class LauncherView extends StackPane {
     container.getStyleClass().setAll("container");
     progressView.getStyleClass().setAll("progress-view");
     phase.getStyleClass().setAll("phase");
+    detail.getStyleClass().setAll("detail");
 
     container.getChildren().setAll(messageView, progressView);
     getChildren().addAll(container);
@@ -73,21 +101,26 @@ public class LauncherView extends StackPane {
    * 初始化更新时组件
    */
   public void initUpdateView() {
-    FxUtils.runAndWait(() -> {
-      setUpdating(true);
-      // 创建组件
-      ScrollPane whatNewView = new ScrollPane();
-      whatNew = new Label();
-      progressBar = new ProgressBar();
-      VBox box = new VBox(phase, progressBar);
-      // 设置样式
-      whatNew.getStyleClass().setAll("what-new");
-      box.getStyleClass().setAll("progress-box");
-      // 装载组件
-      whatNewView.setContent(whatNew);
-      messageView.getChildren().setAll(whatNewView);
-      progressView.getChildren().setAll(box);
-    });
+    publish(current -> current.withUpdating(true));
+  }
+
+  /**
+   * 创建更新时组件
+   */
+  private void buildUpdateView() {
+    setUpdating(true);
+    // 创建组件
+    ScrollPane whatNewView = new ScrollPane();
+    whatNew = new Label();
+    progressBar = new ProgressBar();
+    VBox box = new VBox(phase, progressBar, detail);
+    // 设置样式
+    whatNew.getStyleClass().setAll("what-new");
+    box.getStyleClass().setAll("progress-box");
+    // 装载组件
+    whatNewView.setContent(whatNew);
+    messageView.getChildren().setAll(whatNewView);
+    progressView.getChildren().setAll(box);
   }
 
   /**
@@ -101,12 +134,88 @@ public class LauncherView extends StackPane {
   }
 
   /**
-   * 设置更新进度
+   * 显示下载统计，每帧读取一次快照，与下载的文件数量和回调次数无关，下载结束后停止刷新
    *
-   * @param progress 进度
+   * @param stats 下载统计
    */
-  public void setProgress(double progress) {
-    FxUtils.runFx(() -> this.progressBar.setProgress(progress));
+  public void showDownloadStats(DownloadStats stats) {
+    FxUtils.runFx(() -> {
+      stopStatsTimer();
+      statsTimer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+          DownloadStats.Snapshot snapshot = stats.snapshot();
+          renderStats(snapshot);
+          if (snapshot.isFinished()) {
+            stop();
+          }
+        }
+      };
+      statsTimer.start();
+    });
+  }
+
+  /**
+   * 显示下载状态
+   *
+   * @param snapshot 快照
+   */
+  private void renderStats(DownloadStats.Snapshot snapshot) {
+    if (progressBar == null) {
+      return;
+    }
+    progressBar.setProgress(snapshot.getProgress());
+    String eta = snapshot.getEtaSeconds() < 0 ? "--:--" : formatDuration(snapshot.getEtaSeconds());
+    StringBuilder text = new StringBuilder(String.format("%s/s  剩余 %s  %d/%d", formatBytes((long) snapshot.getBytesPerSecond()), eta,
+      snapshot.getCompletedFiles(), snapshot.getTotalFiles()));
+    String currentFile = snapshot.getCurrentFile();
+    if (currentFile != null && snapshot.getRemainingFiles() > 0) {
+      text.append('\n').append(currentFile.substring(currentFile.lastIndexOf('/') + 1));
+    }
+    detail.setText(text.toString());
+  }
+
+  /**
+   * 停止刷新下载统计
+   */
+  private void stopStatsTimer() {
+    if (statsTimer != null) {
+      statsTimer.stop();
+      statsTimer = null;
+    }
+  }
+
+  /**
+   * 格式化字节数
+   *
+   * @param bytes 字节数
+   * @return 如 1.5 MB
+   */
+  private static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    String[] units = {"KB", "MB", "GB", "TB"};
+    double value = bytes;
+    int unit = -1;
+    while (value >= 1024 && unit < units.length - 1) {
+      value /= 1024;
+      unit++;
+    }
+    return String.format("%.1f %s", value, units[unit]);
+  }
+
+  /**
+   * 格式化时长
+   *
+   * @param seconds 秒
+   * @return mm:ss 或 hh:mm:ss
+   */
+  private static String formatDuration(long seconds) {
+    if (seconds >= 3600) {
+      return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+    return String.format("%02d:%02d", seconds / 60, seconds % 60);
   }
 
   /**
@@ -115,15 +224,8 @@ public class LauncherView extends StackPane {
    * @param news 更新内容
    */
   public void setWhatNew(List<String> news) {
-    StringBuilder updateMsg = new StringBuilder();
-    for (String msg : news) {
-      updateMsg.append(msg).append("\n");
-    }
-    FxUtils.runFx(() -> {
-      ScrollPane whatNewView = new ScrollPane();
-      whatNew.setText(updateMsg.toString());
-      whatNewView.setContent(whatNew);
-    });
+    List<String> copy = List.copyOf(news);
+    publish(current -> current.withWhatNew(copy));
   }
 
   /**
@@ -134,23 +236,31 @@ public class LauncherView extends StackPane {
    */
   public void setError(Throwable e, Runnable closeHandler) {
     log.log(Level.SEVERE, "程序启动异常", e);
-    FxUtils.runFx(() -> {
-      setUpdating(true);
-      phase.setText("程序启动异常，请查看日志！");
-      Pane exit = new Pane();
-      // 处理退出按钮被点击
-      exit.setOnMouseClicked(event -> {
-        if (closeHandler == null) {
-          System.exit(-1);
-        }
-        closeHandler.run();
-      });
-      VBox box = new VBox(phase, exit);
-      exit.getStyleClass().add("exit-btn");
-      phase.getStyleClass().add("error");
-      box.getStyleClass().setAll("progress-box");
-      progressView.getChildren().setAll(box);
+    publish(current -> current.withError(e).withCloseHandler(closeHandler));
+  }
+
+  /**
+   * 创建错误提示组件
+   *
+   * @param closeHandler 关闭按钮点击回调
+   */
+  private void buildErrorView(Runnable closeHandler) {
+    stopStatsTimer();
+    setUpdating(true);
+    phase.setText("程序启动异常，请查看日志！");
+    Pane exit = new Pane();
+    // 处理退出按钮被点击
+    exit.setOnMouseClicked(event -> {
+      if (closeHandler == null) {
+        System.exit(-1);
+      }
+      closeHandler.run();
     });
+    VBox box = new VBox(phase, exit);
+    exit.getStyleClass().add("exit-btn");
+    phase.getStyleClass().add("error");
+    box.getStyleClass().setAll("progress-box");
+    progressView.getChildren().setAll(box);
   }
 
   /**
@@ -160,7 +270,52 @@ public class LauncherView extends StackPane {
    */
   public void setPhase(String phase) {
     log.info(phase);
-    FxUtils.runAndWait(() -> this.phase.setText(phase));
+    publish(current -> current.withPhase(phase));
+  }
+
+  /**
+   * 发布新的状态，不等待界面刷新
+   *
+   * @param update 基于当前状态生成新状态
+   */
+  private void publish(UnaryOperator<LauncherState> update) {
+    state.updateAndGet(update);
+    // 已经有未执行的刷新任务时，该任务会读到本次的状态
+    if (drainScheduled.compareAndSet(false, true)) {
+      FxUtils.runFx(this::drain);
+    }
+  }
+
+  /**
+   * 在 FX 线程显示最新的状态
+   */
+  private void drain() {
+    drainScheduled.set(false);
+    LauncherState next = state.get();
+    LauncherState last = rendered;
+    if (next == last) {
+      return;
+    }
+    rendered = next;
+    if (next.isUpdating() && !last.isUpdating()) {
+      buildUpdateView();
+    }
+    if (whatNew != null && !Objects.equals(next.getWhatNew(), last.getWhatNew())) {
+      StringBuilder updateMsg = new StringBuilder();
+      for (String msg : next.getWhatNew()) {
+        updateMsg.append(msg).append("\n");
+      }
+      whatNew.setText(updateMsg.toString());
+    }
+    if (next.getError() != null) {
+      if (last.getError() == null) {
+        buildErrorView(next.getCloseHandler());
+      }
+      return;
+    }
+    if (!Objects.equals(next.getPhase(), last.getPhase())) {
+      phase.setText(next.getPhase());
+    }
   }
 
   /**
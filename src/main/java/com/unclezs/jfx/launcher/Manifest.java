@@ -1,23 +1,36 @@
 package com.unclezs.jfx.launcher;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
+import lombok.ToString;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author blog.unclezs.com
@@ -41,6 +54,14 @@ public class Manifest implements Serializable {
    * 反斜杠
    */
   public static final String BACKSLASH = "/";
+  /**
+   * 资源列表的字段名
+   */
+  private static final String RESOURCES_FIELD = "resources";
+  /**
+   * 单个资源的解析器
+   */
+  private static final TypeAdapter<Resource> RESOURCE_ADAPTER = GSON.getAdapter(Resource.class);
   /**
    * 配置文件位置
    */
@@ -53,6 +74,10 @@ public class Manifest implements Serializable {
    * 服务器地址
    */
   protected String url;
+  /**
+   * 资源服务器镜像地址，与 url 存放相同的资源
+   */
+  protected List<String> mirrors;
   /**
    * 服务端配置的URI
    */
@@ -81,6 +106,65 @@ public class Manifest implements Serializable {
    * 运行时导出/开放/读取的模块
    */
   protected List<String> moduleOptions = new ArrayList<>();
+  /**
+   * 同时下载的资源数，为空则使用默认值
+   */
+  protected Integer parallelism;
+  /**
+   * 单个主机的最大连接数，为空则与并发数一致
+   */
+  protected Integer hostConnections;
+  /**
+   * 单个文件分段下载的最多分段数，为空则使用默认值，不大于 1 不分段
+   */
+  protected Integer segments;
+  /**
+   * 分段下载的最小文件大小，单位字节，为空则使用默认值
+   */
+  protected Long segmentThreshold;
+  /**
+   * 按内容寻址的资源仓库目录，支持 ~ 开头，多个应用可共享，为空则不启用
+   */
+  protected String storePath;
+  /**
+   * 全部下载的总速度上限，单位 bytes/s，为空则不限速
+   */
+  protected Long bandwidthLimit;
+  /**
+   * 单个资源的下载速度上限，单位 bytes/s，为空则不限速
+   */
+  protected Long resourceBandwidthLimit;
+  /**
+   * 是否根据服务端响应延迟与 429/503 自动调整并发数
+   */
+  protected Boolean adaptiveParallelism;
+  /**
+   * 服务端繁忙（429/503）时单个资源的重试次数，为空则使用默认值
+   */
+  protected Integer busyRetries;
+  /**
+   * 更新方式，为空则阻塞更新
+   */
+  protected UpdateMode updateMode;
+  /**
+   * 是否为强制更新，BACKGROUND_UNLESS_MANDATORY 时强制更新会在启动前完成
+   */
+  protected Boolean mandatory;
+  /**
+   * 是否启用动态 AppCDS 归档，需要 JDK 13 及以上
+   */
+  protected Boolean appCds;
+  /**
+   * 是否在启动界面显示期间预读 JAR 与本地库
+   */
+  protected Boolean prefetch;
+  /**
+   * 当前平台的资源索引，修改资源列表后重建
+   */
+  @Getter(AccessLevel.NONE)
+  @ToString.Exclude
+  private final transient AtomicReference<ResourceIndex> resourceIndex = new AtomicReference<>();
+
   /**
    * 加载配置
    *
@@ -89,13 +173,137 @@ public class Manifest implements Serializable {
    */
   @NonNull
   public static Manifest load(URI uri) {
+    LauncherEvents.ManifestFetch event = LauncherEvents.ENABLED ? new LauncherEvents.ManifestFetch() : null;
+    if (event != null) {
+      event.begin();
+    }
     try (InputStream stream = uri.toURL().openStream()) {
-      return GSON.fromJson(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)), Manifest.class);
+      return read(stream, BinaryManifest.isBinary(uri.toString(), null));
     } catch (Exception e) {
       throw new LauncherException("Manifest加载失败: ".concat(uri.toString()), e);
+    } finally {
+      commitEvent(event, uri, 0);
     }
   }
 
+  /**
+   * 通过条件请求加载配置，服务端返回 304 时不下载、不解析
+   *
+   * @param uri       配置文件URI
+   * @param validator 上次获取时的校验信息，加载成功后会更新为本次的校验信息
+   * @return 配置，未变化返回 null
+   */
+  public static Manifest load(URI uri, ManifestValidator validator) {
+    LauncherEvents.ManifestFetch event = LauncherEvents.ENABLED ? new LauncherEvents.ManifestFetch() : null;
+    if (event != null) {
+      event.begin();
+    }
+    int status = 0;
+    try {
+      URLConnection connection = uri.toURL().openConnection();
+      if (!(connection instanceof HttpURLConnection)) {
+        try (InputStream stream = connection.getInputStream()) {
+          return read(stream, BinaryManifest.isBinary(uri.toString(), null));
+        }
+      }
+      HttpURLConnection http = (HttpURLConnection) connection;
+      try {
+        validator.apply(http);
+        status = http.getResponseCode();
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          return null;
+        }
+        try (InputStream stream = http.getInputStream()) {
+          Manifest manifest = read(stream, BinaryManifest.isBinary(uri.toString(), http.getContentType()));
+          validator.update(http);
+          return manifest;
+        }
+      } finally {
+        http.disconnect();
+      }
+    } catch (Exception e) {
+      throw new LauncherException("Manifest加载失败: ".concat(uri.toString()), e);
+    } finally {
+      commitEvent(event, uri, status);
+    }
+  }
+
+  /**
+   * 提交获取配置的 JFR 事件
+   *
+   * @param event  事件，未启用 JFR 为空
+   * @param uri    配置地址
+   * @param status HTTP 状态码
+   */
+  private static void commitEvent(LauncherEvents.ManifestFetch event, URI uri, int status) {
+    if (event == null) {
+      return;
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.uri = uri.toString();
+      event.status = status;
+      event.notModified = status == HttpURLConnection.HTTP_NOT_MODIFIED;
+      event.commit();
+    }
+  }
+
+  /**
+   * 解析配置
+   *
+   * @param stream 配置内容
+   * @param binary 是否为二进制格式
+   * @return 配置
+   * @throws IOException 读取失败
+   */
+  private static Manifest read(InputStream stream, boolean binary) throws IOException {
+    return binary ? BinaryManifest.read(stream) : read(stream);
+  }
+
+  /**
+   * 解析 JSON 配置
+   * <p>
+   * 资源列表逐个流式解析并同时建立当前平台的索引，不生成整个列表的中间树，其余字段数量很少，交给 Gson 绑定
+   *
+   * @param stream 配置内容
+   * @return 配置
+   * @throws IOException 读取失败
+   */
+  static Manifest read(InputStream stream) throws IOException {
+    JsonReader reader = GSON.newJsonReader(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)));
+    // 与 Gson.fromJson 一致
+    reader.setLenient(true);
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      return GSON.fromJson(reader, Manifest.class);
+    }
+    JsonObject fields = new JsonObject();
+    List<Resource> resources = new ArrayList<>();
+    ResourceIndex index = new ResourceIndex();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (!RESOURCES_FIELD.equals(name)) {
+        fields.add(name, JsonParser.parseReader(reader));
+      } else if (reader.peek() == JsonToken.NULL) {
+        reader.nextNull();
+      } else {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          Resource resource = RESOURCE_ADAPTER.read(reader);
+          if (resource != null) {
+            resources.add(resource);
+            index.add(resource);
+          }
+        }
+        reader.endArray();
+      }
+    }
+    reader.endObject();
+    Manifest manifest = GSON.fromJson(fields, Manifest.class);
+    manifest.setResources(resources, index);
+    return manifest;
+  }
+
   /**
    * 获取嵌入的 manifest
    *
@@ -125,13 +333,68 @@ public class Manifest implements Serializable {
     this.url = url;
   }
 
+  /**
+   * 设置资源列表，同时清除索引
+   *
+   * @param resources 资源
+   */
+  public void setResources(List<Resource> resources) {
+    this.resources = resources;
+    this.resourceIndex.set(null);
+  }
+
+  /**
+   * 设置资源列表与已经建立的索引
+   *
+   * @param resources 资源
+   * @param index     当前平台的资源索引
+   */
+  void setResources(List<Resource> resources, ResourceIndex index) {
+    this.resources = resources;
+    this.resourceIndex.set(index);
+  }
+
   /**
    * 解析当前平台的资源
    *
-   * @return 当前资源列表
+   * @return 当前资源列表，只读
    */
   public List<Resource> resolveResources() {
-    return resources.stream().filter(Resource::currentPlatform).collect(Collectors.toList());
+    return resourceIndex().resources();
+  }
+
+  /**
+   * 解析当前平台指定类型的资源
+   *
+   * @param type 类型
+   * @return 资源列表，只读
+   */
+  public List<Resource> resolveResources(Resource.Type type) {
+    return resourceIndex().resources(type);
+  }
+
+  /**
+   * 按路径查找当前平台的资源
+   *
+   * @param path 资源路径
+   * @return 资源，不存在返回 null
+   */
+  public Resource findResource(String path) {
+    return resourceIndex().find(path);
+  }
+
+  /**
+   * 获取资源索引，通过 Gson 绑定或手动创建的配置在第一次使用时建立
+   *
+   * @return 资源索引
+   */
+  private ResourceIndex resourceIndex() {
+    ResourceIndex index = resourceIndex.get();
+    if (index == null) {
+      index = ResourceIndex.of(resources);
+      resourceIndex.set(index);
+    }
+    return index;
   }
 
 
@@ -144,6 +407,16 @@ public class Manifest implements Serializable {
     return Path.of(".", configPath).toAbsolutePath();
   }
 
+  /**
+   * 获取与本地配置同目录的启动器数据文件
+   *
+   * @param fileName 文件名
+   * @return 文件路径
+   */
+  public Path localFile(String fileName) {
+    return localManifest().resolveSibling(fileName);
+  }
+
   /**
    * 获取 远程的配置
    *
@@ -165,6 +438,22 @@ public class Manifest implements Serializable {
     return GSON.toJson(this);
   }
 
+  /**
+   * 保存配置，扩展名为 {@link BinaryManifest#EXTENSION} 时保存为二进制格式，否则为 JSON
+   *
+   * @param file 文件
+   * @throws IOException 写入失败
+   */
+  public void write(Path file) throws IOException {
+    if (!BinaryManifest.isBinary(file.getFileName().toString(), null)) {
+      Files.writeString(file, toJson());
+      return;
+    }
+    try (OutputStream out = Files.newOutputStream(file)) {
+      BinaryManifest.write(this, out);
+    }
+  }
+
   /**
    * 校验配置是否有效
    *
@@ -173,4 +462,22 @@ public class Manifest implements Serializable {
   public boolean validate() {
     return launchClass != null && !launchClass.isBlank();
   }
+
+  /**
+   * 更新方式
+   */
+  public enum UpdateMode {
+    /**
+     * 检测并下载完更新后再启动应用
+     */
+    BLOCKING,
+    /**
+     * 直接启动本地版本，后台检测并下载更新，下次启动生效
+     */
+    BACKGROUND,
+    /**
+     * 启动前只检测配置，强制更新时阻塞下载，否则后台下载
+     */
+    BACKGROUND_UNLESS_MANDATORY
+  }
 }
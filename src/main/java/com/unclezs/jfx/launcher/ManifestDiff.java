@@ -0,0 +1,202 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 比较本地与远程配置，生成更新计划
+ * <p>
+ * 资源按路径对应。本地配置是上次更新提交时写入的，其中的文件在提交前都已校验过，所以两边大小、摘要都一致的资源只检查文件是否存在、
+ * 大小是否一致，不再计算摘要，被删除或截断的文件再做完整检查；新增或内容变化的资源都做完整检查，本地已经是新版本的
+ * （例如上次下载到一半的更新已经替换过）不再下载。文件较多时使用线程池并行读取文件属性与摘要，网络目录、杀毒软件扫描的磁盘上
+ * 单个文件的系统调用很慢。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/30 20:02
+ */
+@UtilityClass
+public class ManifestDiff {
+  /**
+   * 需要检查的文件少于该数量时在当前线程检查
+   */
+  private static final int PARALLEL_THRESHOLD = 32;
+  /**
+   * 检查文件的线程数，以等待 IO 为主，可以多于 CPU 核数
+   */
+  private static final int CHECK_PARALLELISM = Math.max(4, Math.min(16, Runtime.getRuntime().availableProcessors() * 2));
+  /**
+   * 每个线程分到的任务数，任务越多各线程的负载越均衡
+   */
+  private static final int TASKS_PER_THREAD = 4;
+
+  /**
+   * 生成更新计划
+   *
+   * @param local     本地配置
+   * @param remote    远程配置
+   * @param fileIndex 文件索引，为空则直接计算摘要
+   * @param installed 本地配置是否为已安装的配置，否则（如首次启动时的内嵌配置）每个资源都要检查本地文件，也不删除旧文件
+   * @return 更新计划
+   */
+  public static UpdatePlan compare(Manifest local, Manifest remote, FileIndex fileIndex, boolean installed) {
+    List<Resource> resources = remote.resolveResources();
+    // 先按配置标记只需要检查文件大小的资源，再一次性检查
+    boolean[] trusted = new boolean[resources.size()];
+    for (int i = 0; i < resources.size(); i++) {
+      Resource resource = resources.get(i);
+      Resource previous = local.findResource(resource.getPath());
+      trusted[i] = installed && previous != null && sameContent(previous, resource);
+    }
+    boolean[] stale = checkFiles(resources, trusted, fileIndex);
+    List<Resource> added = new ArrayList<>();
+    List<Resource> changed = new ArrayList<>();
+    List<Resource> unchanged = new ArrayList<>();
+    Set<Path> targets = new HashSet<>();
+    for (int i = 0; i < resources.size(); i++) {
+      Resource resource = resources.get(i);
+      targets.add(normalize(resource));
+      if (!stale[i]) {
+        unchanged.add(resource);
+      } else if (local.findResource(resource.getPath()) == null) {
+        added.add(resource);
+      } else {
+        changed.add(resource);
+      }
+    }
+    List<Resource> removed = new ArrayList<>();
+    if (installed) {
+      for (Resource resource : local.resolveResources()) {
+        if (remote.findResource(resource.getPath()) == null && !targets.contains(normalize(resource))) {
+          removed.add(resource);
+        }
+      }
+    }
+    return new UpdatePlan(remote, !local.equals(remote), added, changed, unchanged, removed);
+  }
+
+  /**
+   * 检查本地文件是否需要更新
+   *
+   * @param resources 资源
+   * @param trusted   与资源一一对应，true 只检查文件大小
+   * @param fileIndex 文件索引
+   * @return 与资源一一对应，true 需要更新
+   */
+  private static boolean[] checkFiles(List<Resource> resources, boolean[] trusted, FileIndex fileIndex) {
+    boolean[] stale = new boolean[resources.size()];
+    if (resources.size() < PARALLEL_THRESHOLD) {
+      for (int i = 0; i < stale.length; i++) {
+        stale[i] = checkFile(resources.get(i), trusted[i], fileIndex);
+      }
+      return stale;
+    }
+    int threads = Math.min(CHECK_PARALLELISM, resources.size());
+    int chunk = Math.max(1, resources.size() / (threads * TASKS_PER_THREAD));
+    List<Callable<Void>> tasks = new ArrayList<>();
+    for (int from = 0; from < stale.length; from += chunk) {
+      final int start = from;
+      final int end = Math.min(stale.length, from + chunk);
+      tasks.add(() -> {
+        for (int i = start; i < end; i++) {
+          stale[i] = checkFile(resources.get(i), trusted[i], fileIndex);
+        }
+        return null;
+      });
+    }
+    AtomicInteger threadIndex = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "Launcher-Check-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LauncherException("检查本地文件被中断", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof LauncherException) {
+        throw (LauncherException) e.getCause();
+      }
+      throw new LauncherException("检查本地文件失败", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return stale;
+  }
+
+  /**
+   * 检查单个本地文件是否需要更新
+   *
+   * @param resource  资源
+   * @param trusted   true 本地配置中的资源与远程一致，文件存在且大小一致即可
+   * @param fileIndex 文件索引
+   * @return true 需要更新
+   */
+  private static boolean checkFile(Resource resource, boolean trusted, FileIndex fileIndex) {
+    if (trusted) {
+      Path localPath = resource.toLocalPath();
+      try {
+        BasicFileAttributes attributes = FileIndex.attributes(localPath);
+        if (attributes != null && attributes.isRegularFile() && attributes.size() == resource.getSize()) {
+          return false;
+        }
+      } catch (IOException e) {
+        throw new LauncherException("读取本地文件失败: " + localPath, e);
+      }
+    }
+    return resource.hasNew(fileIndex);
+  }
+
+  /**
+   * 两个版本的资源文件内容是否一致
+   *
+   * @param previous 本地配置中的资源
+   * @param resource 远程配置中的资源
+   * @return true 大小一致，且摘要一致或都没有配置摘要
+   */
+  private static boolean sameContent(Resource previous, Resource resource) {
+    if (previous.getSize() == null || !previous.getSize().equals(resource.getSize())) {
+      return false;
+    }
+    if (isBlank(previous.getHash()) && isBlank(resource.getHash())) {
+      return true;
+    }
+    return HashUtils.matches(previous.getHash(), resource.getHash());
+  }
+
+  /**
+   * 资源本地文件的规范路径，用于判断不同写法的路径是否指向同一个文件
+   *
+   * @param resource 资源
+   * @return 路径
+   */
+  private static Path normalize(Resource resource) {
+    return resource.toLocalPath().toAbsolutePath().normalize();
+  }
+
+  /**
+   * 字符串是否为空
+   *
+   * @param value 字符串
+   * @return true 为 null 或空白
+   */
+  private static boolean isBlank(String value) {
+    return value == null || value.isBlank();
+  }
+}
@@ -0,0 +1,125 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+
+/**
+ * 远程配置的缓存校验信息
+ * <p>
+ * 记录上次获取远程配置时服务端返回的 ETag 与 Last-Modified，下次获取时发送条件请求，
+ * 服务端返回 304 时说明配置未变化，无需下载与解析。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/18 10:12
+ */
+@Log
+@Data
+@NoArgsConstructor
+public class ManifestValidator {
+  /**
+   * 校验信息文件名
+   */
+  public static final String FILE_NAME = "manifest-validator.json";
+  /**
+   * 远程配置地址
+   */
+  private String uri;
+  /**
+   * 服务端 ETag
+   */
+  private String etag;
+  /**
+   * 服务端 Last-Modified
+   */
+  private String lastModified;
+  /**
+   * 保存位置
+   */
+  private transient Path file;
+
+  /**
+   * 读取校验信息，本地配置不存在或远程地址变化时返回空的校验信息
+   *
+   * @param localManifest 本地配置文件
+   * @param uri           远程配置地址
+   * @return 校验信息
+   */
+  public static ManifestValidator load(Path localManifest, URI uri) {
+    Path file = localManifest.resolveSibling(FILE_NAME);
+    ManifestValidator validator = null;
+    if (Files.exists(localManifest) && Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        validator = Manifest.GSON.fromJson(reader, ManifestValidator.class);
+      } catch (Exception e) {
+        log.log(Level.WARNING, "读取配置缓存信息失败: " + file, e);
+      }
+    }
+    if (validator == null || !uri.toString().equals(validator.getUri())) {
+      validator = new ManifestValidator();
+      validator.setUri(uri.toString());
+    }
+    validator.file = file;
+    return validator;
+  }
+
+  /**
+   * 是否有可用于条件请求的信息
+   *
+   * @return true 有
+   */
+  public boolean isPresent() {
+    return etag != null || lastModified != null;
+  }
+
+  /**
+   * 给请求加上条件请求头
+   *
+   * @param connection 连接
+   */
+  public void apply(URLConnection connection) {
+    if (etag != null) {
+      connection.setRequestProperty("If-None-Match", etag);
+    }
+    if (lastModified != null) {
+      connection.setRequestProperty("If-Modified-Since", lastModified);
+    }
+  }
+
+  /**
+   * 记录服务端返回的校验信息
+   *
+   * @param connection 连接
+   */
+  public void update(URLConnection connection) {
+    this.etag = connection.getHeaderField("ETag");
+    this.lastModified = connection.getHeaderField("Last-Modified");
+  }
+
+  /**
+   * 保存校验信息，只有本地配置与远程配置一致时才能保存
+   */
+  public void save() {
+    if (file == null) {
+      return;
+    }
+    try {
+      if (isPresent()) {
+        Files.writeString(file, Manifest.GSON.toJson(this));
+      } else {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "保存配置缓存信息失败: " + file, e);
+    }
+  }
+}
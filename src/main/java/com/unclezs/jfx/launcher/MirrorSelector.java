@@ -0,0 +1,397 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+/**
+ * 资源镜像选择
+ * <p>
+ * 按测得的响应延迟与下载速度估算每个镜像下载一个典型文件的耗时，优先选择耗时最短且空闲的镜像，
+ * 同一时刻进行中的下载按耗时 ×（进行中的数量 + 1）分散到多个镜像。失败的镜像暂时跳过，连续失败越多跳过越久。
+ * 测量结果保存在配置目录下，下次启动直接使用，只有没有记录的镜像需要先探测。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/03 15:20
+ */
+@Log
+public class MirrorSelector {
+  /**
+   * 测量记录文件名
+   */
+  public static final String FILE_NAME = "mirrors.json";
+  /**
+   * 估算耗时使用的典型文件大小
+   */
+  private static final long REFERENCE_BYTES = 1 << 20;
+  /**
+   * 没有下载速度记录时假定的速度，bytes/s
+   */
+  private static final double DEFAULT_THROUGHPUT = 1 << 20;
+  /**
+   * 没有延迟记录时假定的延迟，毫秒
+   */
+  private static final double DEFAULT_LATENCY = 500;
+  /**
+   * 新样本的权重
+   */
+  private static final double SMOOTHING = 0.3;
+  /**
+   * 小于该大小的下载只用于更新延迟，速度主要受延迟影响
+   */
+  private static final long MIN_THROUGHPUT_SAMPLE = 64 * 1024;
+  /**
+   * 探测超时
+   */
+  private static final int PROBE_TIMEOUT = 3000;
+  /**
+   * 失败后首次跳过的时间，之后每次翻倍
+   */
+  private static final long FAILURE_COOLDOWN_MILLIS = 5000;
+  /**
+   * 失败后最长跳过的时间
+   */
+  private static final long MAX_COOLDOWN_MILLIS = 300_000;
+  /**
+   * 记录文件，为空则不保存
+   */
+  private final Path file;
+  /**
+   * 镜像，按配置顺序
+   */
+  private final List<Mirror> mirrors;
+
+  /**
+   * 镜像选择
+   *
+   * @param urls 镜像地址，第一个为主地址，与 {@link Manifest#setUrl(String)} 一样保证以 / 结尾
+   * @param file 记录文件，为空则不读取也不保存
+   */
+  public MirrorSelector(List<String> urls, Path file) {
+    this.file = file;
+    Map<String, MirrorStats> saved = file == null ? Map.of() : loadStats(file);
+    Map<String, Mirror> unique = new LinkedHashMap<>();
+    for (String url : urls) {
+      if (url != null && !url.isBlank()) {
+        // 资源路径按 URI 相对解析，缺少 / 时会替换掉最后一级目录
+        String base = url.endsWith(Manifest.BACKSLASH) ? url : url.concat(Manifest.BACKSLASH);
+        unique.computeIfAbsent(base, key -> new Mirror(key, saved.get(key)));
+      }
+    }
+    if (unique.isEmpty()) {
+      throw new LauncherException("没有配置资源服务器地址");
+    }
+    this.mirrors = new ArrayList<>(unique.values());
+  }
+
+  /**
+   * 根据配置创建，主地址 url 在前，镜像 mirrors 在后
+   *
+   * @param manifest 配置
+   * @param file     记录文件
+   * @return 镜像选择
+   */
+  public static MirrorSelector of(Manifest manifest, Path file) {
+    List<String> urls = new ArrayList<>();
+    urls.add(manifest.getUrl());
+    if (manifest.getMirrors() != null) {
+      urls.addAll(manifest.getMirrors());
+    }
+    return new MirrorSelector(urls, file);
+  }
+
+  /**
+   * 并行探测没有测量记录的镜像，只有一个镜像时不探测
+   */
+  public void probe() {
+    List<Mirror> unknown = mirrors.stream().filter(mirror -> mirror.stats.getLatency() <= 0).collect(Collectors.toList());
+    if (mirrors.size() < 2 || unknown.isEmpty()) {
+      return;
+    }
+    AtomicInteger threadIndex = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(unknown.size(), r -> {
+      Thread thread = new Thread(r, "Launcher-Probe-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      unknown.forEach(mirror -> executor.execute(() -> probe(mirror)));
+      executor.shutdown();
+      if (!executor.awaitTermination(PROBE_TIMEOUT * 2L, TimeUnit.MILLISECONDS)) {
+        log.log(Level.WARNING, "探测镜像超时");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+    }
+    log.log(Level.INFO, "镜像排名: {0}", ranking());
+  }
+
+  /**
+   * 探测单个镜像的响应延迟，收到任意 HTTP 响应即认为可用
+   *
+   * @param mirror 镜像
+   */
+  private void probe(Mirror mirror) {
+    long start = System.nanoTime();
+    try {
+      URLConnection connection = URI.create(mirror.url).toURL().openConnection();
+      connection.setConnectTimeout(PROBE_TIMEOUT);
+      connection.setReadTimeout(PROBE_TIMEOUT);
+      if (connection instanceof HttpURLConnection) {
+        HttpURLConnection http = (HttpURLConnection) connection;
+        http.setRequestMethod("HEAD");
+        int code = http.getResponseCode();
+        http.disconnect();
+        if (code >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+          throw new IOException("HTTP " + code);
+        }
+      } else {
+        connection.connect();
+      }
+      success(mirror, System.nanoTime() - start, 0, 0);
+    } catch (Exception e) {
+      log.log(Level.WARNING, "镜像不可用: {0} ({1})", new Object[]{mirror.url, e.toString()});
+      failure(mirror, 0);
+    }
+  }
+
+  /**
+   * 选择一个镜像，调用方用完后必须 {@link #release(Mirror)}
+   *
+   * @param excluded 本次不使用的镜像（例如刚刚失败过），全部被排除时忽略该条件
+   * @return 镜像
+   */
+  public synchronized Mirror acquire(Collection<Mirror> excluded) {
+    long now = System.currentTimeMillis();
+    List<Mirror> candidates = mirrors.stream().filter(mirror -> !excluded.contains(mirror)).collect(Collectors.toList());
+    if (candidates.isEmpty()) {
+      candidates = mirrors;
+    }
+    List<Mirror> available = candidates.stream().filter(mirror -> mirror.cooldownUntil <= now).collect(Collectors.toList());
+    Mirror best = available.isEmpty()
+      // 全部在冷却中时使用最先恢复的
+      ? candidates.stream().min(Comparator.comparingLong(mirror -> mirror.cooldownUntil)).orElseThrow()
+      : available.stream().min(Comparator.comparingDouble(mirror -> mirror.cost() * (mirror.inFlight + 1))).orElseThrow();
+    best.inFlight++;
+    return best;
+  }
+
+  /**
+   * 归还镜像
+   *
+   * @param mirror 镜像
+   */
+  public synchronized void release(Mirror mirror) {
+    mirror.inFlight--;
+  }
+
+  /**
+   * 记录一次成功的请求
+   *
+   * @param mirror        镜像
+   * @param latencyNanos  从发起请求到收到响应头的时间
+   * @param bytes         下载的字节数
+   * @param transferNanos 下载耗时
+   */
+  public synchronized void success(Mirror mirror, long latencyNanos, long bytes, long transferNanos) {
+    MirrorStats stats = mirror.stats;
+    if (latencyNanos > 0) {
+      stats.setLatency(smooth(stats.getLatency(), latencyNanos / 1e6));
+    }
+    if (bytes >= MIN_THROUGHPUT_SAMPLE && transferNanos > 0) {
+      stats.setThroughput(smooth(stats.getThroughput(), bytes * 1e9 / transferNanos));
+    }
+    stats.setFailures(0);
+    mirror.cooldownUntil = 0;
+  }
+
+  /**
+   * 记录一次失败，镜像在一段时间内不再被优先选择
+   *
+   * @param mirror         镜像
+   * @param cooldownMillis 服务端要求的等待时间，不大于 0 则按连续失败次数退避
+   */
+  public synchronized void failure(Mirror mirror, long cooldownMillis) {
+    MirrorStats stats = mirror.stats;
+    stats.setFailures(stats.getFailures() + 1);
+    if (cooldownMillis <= 0) {
+      cooldownMillis = Math.min(MAX_COOLDOWN_MILLIS, FAILURE_COOLDOWN_MILLIS << Math.min(stats.getFailures() - 1, 16));
+    }
+    mirror.cooldownUntil = Math.max(mirror.cooldownUntil, System.currentTimeMillis() + cooldownMillis);
+  }
+
+  /**
+   * 镜像数量
+   *
+   * @return 数量
+   */
+  public int size() {
+    return mirrors.size();
+  }
+
+  /**
+   * 按估算耗时排序的镜像地址
+   *
+   * @return 地址
+   */
+  public synchronized List<String> ranking() {
+    return mirrors.stream().sorted(Comparator.comparingDouble(Mirror::cost)).map(Mirror::getUrl).collect(Collectors.toList());
+  }
+
+  /**
+   * 保存测量结果
+   */
+  public synchronized void save() {
+    if (file == null) {
+      return;
+    }
+    List<MirrorStats> stats = mirrors.stream().map(mirror -> mirror.stats).collect(Collectors.toList());
+    try {
+      Files.writeString(file, Manifest.GSON.toJson(stats));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "保存镜像测量结果失败: " + file, e);
+    }
+  }
+
+  /**
+   * 读取测量结果
+   *
+   * @param file 记录文件
+   * @return 地址 -> 测量结果
+   */
+  private static Map<String, MirrorStats> loadStats(Path file) {
+    Map<String, MirrorStats> stats = new LinkedHashMap<>();
+    if (Files.notExists(file)) {
+      return stats;
+    }
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      MirrorStats[] saved = Manifest.GSON.fromJson(reader, MirrorStats[].class);
+      if (saved != null) {
+        for (MirrorStats item : saved) {
+          if (item != null && item.getUrl() != null) {
+            stats.put(item.getUrl(), item);
+          }
+        }
+      }
+    } catch (Exception e) {
+      log.log(Level.WARNING, "读取镜像测量结果失败: " + file, e);
+    }
+    return stats;
+  }
+
+  /**
+   * 指数平滑
+   *
+   * @param previous 之前的值，不大于 0 表示没有
+   * @param sample   新样本
+   * @return 平滑后的值
+   */
+  private static double smooth(double previous, double sample) {
+    return previous <= 0 ? sample : previous + (sample - previous) * SMOOTHING;
+  }
+
+  /**
+   * 镜像
+   */
+  public static final class Mirror {
+    /**
+     * 地址
+     */
+    private final String url;
+    /**
+     * 测量结果
+     */
+    private final MirrorStats stats;
+    /**
+     * 进行中的下载数
+     */
+    private int inFlight;
+    /**
+     * 冷却到该时间之前不优先选择
+     */
+    private long cooldownUntil;
+
+    private Mirror(String url, MirrorStats saved) {
+      this.url = url;
+      this.stats = saved == null ? new MirrorStats(url) : saved;
+      // 上次失败的镜像本次先按一次失败的时间冷却
+      this.cooldownUntil = this.stats.getFailures() > 0 ? System.currentTimeMillis() + FAILURE_COOLDOWN_MILLIS : 0;
+    }
+
+    /**
+     * 地址
+     *
+     * @return 资源服务器地址
+     */
+    public String getUrl() {
+      return url;
+    }
+
+    /**
+     * 估算下载一个典型文件的耗时，连续失败会成倍增加
+     *
+     * @return 秒
+     */
+    private double cost() {
+      double latency = stats.getLatency() > 0 ? stats.getLatency() : DEFAULT_LATENCY;
+      double throughput = stats.getThroughput() > 0 ? stats.getThroughput() : DEFAULT_THROUGHPUT;
+      return (latency / 1000 + REFERENCE_BYTES / throughput) * (1 + stats.getFailures());
+    }
+
+    @Override
+    public String toString() {
+      return url;
+    }
+  }
+
+  /**
+   * 镜像的测量结果
+   */
+  @Data
+  @NoArgsConstructor
+  static class MirrorStats {
+    /**
+     * 地址
+     */
+    private String url;
+    /**
+     * 平滑后的响应延迟，毫秒，不大于 0 表示没有记录
+     */
+    private double latency;
+    /**
+     * 平滑后的下载速度，bytes/s，不大于 0 表示没有记录
+     */
+    private double throughput;
+    /**
+     * 连续失败次数
+     */
+    private int failures;
+
+    MirrorStats(String url) {
+      this.url = url;
+    }
+  }
+}
@@ -0,0 +1,424 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleFinder;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+/**
+ * 模块描述缓存
+ * <p>
+ * ModuleFinder.of 每次启动都会打开并扫描所有 JAR 读取 module-info 或推导自动模块。这里按 JAR 的路径、大小、修改时间缓存
+ * 模块描述与包列表，命中时直接构造模块描述，JAR 直到第一次从中加载类时才打开。JAR 发生变化或 JDK 版本变化时重新解析。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/24 20:33
+ */
+@Log
+public class ModuleCache {
+  /**
+   * 缓存文件名
+   */
+  public static final String FILE_NAME = "module-cache.json";
+  private static final String MODULE_INFO = "module-info.class";
+  /**
+   * 生成缓存的 JDK 版本，多版本 JAR 会根据运行版本选择 module-info
+   */
+  private int javaVersion = Runtime.version().feature();
+  /**
+   * JAR 绝对路径 -> 模块描述
+   */
+  private Map<String, Entry> entries = new HashMap<>();
+  /**
+   * 缓存文件
+   */
+  private transient Path file;
+  /**
+   * 是否有改动
+   */
+  private transient boolean dirty;
+  /**
+   * JAR 被打开时的回调
+   */
+  private transient Consumer<Path> openListener;
+
+  /**
+   * 读取缓存，不存在、损坏或 JDK 版本不一致时返回空缓存
+   *
+   * @param file 缓存文件
+   * @return 缓存
+   */
+  public static ModuleCache load(Path file) {
+    ModuleCache cache = null;
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        cache = Manifest.GSON.fromJson(reader, ModuleCache.class);
+      } catch (Exception e) {
+        log.log(Level.WARNING, "读取模块缓存失败: " + file, e);
+      }
+    }
+    if (cache == null || cache.entries == null || cache.javaVersion != Runtime.version().feature()) {
+      cache = new ModuleCache();
+      cache.dirty = true;
+    }
+    cache.file = file;
+    return cache;
+  }
+
+  /**
+   * 创建使用缓存的模块查找器，同一个模块名以先出现的为准
+   *
+   * @param modulePath 模块路径
+   * @return 模块查找器
+   */
+  public ModuleFinder finder(Path[] modulePath) {
+    Map<String, ModuleReference> references = new LinkedHashMap<>();
+    Set<String> keys = new HashSet<>();
+    int hits = 0;
+    for (Path path : modulePath) {
+      String key = path.toAbsolutePath().normalize().toString();
+      keys.add(key);
+      ModuleReference cached = findCached(path, key);
+      if (cached != null) {
+        hits++;
+        references.putIfAbsent(cached.descriptor().name(), cached);
+        continue;
+      }
+      for (ModuleReference reference : resolve(path, key)) {
+        // 未命中的模块同样记录打开顺序，否则首次启动学到的顺序会缺少这些 JAR
+        references.putIfAbsent(reference.descriptor().name(), openListener == null ? reference : new ListeningReference(reference, path, openListener));
+      }
+    }
+    // 不在模块路径中的 JAR 已经被删除或替换
+    dirty |= entries.keySet().retainAll(keys);
+    log.log(Level.INFO, "模块缓存命中 {0}/{1}", new Object[]{hits, modulePath.length});
+    return new CachedFinder(references);
+  }
+
+  /**
+   * 设置 JAR 被打开时的回调，用于记录启动时文件的打开顺序
+   *
+   * @param openListener 回调
+   */
+  public void setOpenListener(Consumer<Path> openListener) {
+    this.openListener = openListener;
+  }
+
+  /**
+   * 保存缓存
+   */
+  public void save() {
+    if (!dirty || file == null) {
+      return;
+    }
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+      Files.writeString(temp, Manifest.GSON.toJson(this));
+      ResourceDownloader.move(temp, file);
+      dirty = false;
+    } catch (IOException e) {
+      log.log(Level.WARNING, "保存模块缓存失败: " + file, e);
+    }
+  }
+
+  /**
+   * 从缓存构造模块
+   *
+   * @param path JAR
+   * @param key  缓存键
+   * @return 模块，缓存不存在或已过期返回 null
+   */
+  private ModuleReference findCached(Path path, String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    try {
+      BasicFileAttributes attributes = FileIndex.attributes(path);
+      if (attributes != null && attributes.size() == entry.getSize() && attributes.lastModifiedTime().toMillis() == entry.getMtime()) {
+        return new CachedReference(entry.toDescriptor(), path, openListener);
+      }
+      log.log(Level.INFO, "模块缓存已过期: {0}", path);
+    } catch (Exception e) {
+      log.log(Level.WARNING, "模块缓存损坏: " + path, e);
+    }
+    entries.remove(key);
+    dirty = true;
+    return null;
+  }
+
+  /**
+   * 使用 JDK 解析模块并记录到缓存
+   *
+   * @param path JAR 或目录
+   * @param key  缓存键
+   * @return 模块
+   */
+  private Set<ModuleReference> resolve(Path path, String key) {
+    Set<ModuleReference> found = ModuleFinder.of(path).findAll();
+    try {
+      BasicFileAttributes attributes = FileIndex.attributes(path);
+      if (found.size() == 1 && attributes != null && attributes.isRegularFile()) {
+        entries.put(key, Entry.of(found.iterator().next().descriptor(), path, attributes));
+        dirty = true;
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "记录模块缓存失败: " + path, e);
+    }
+    return found;
+  }
+
+  /**
+   * 缓存的模块描述
+   */
+  @Data
+  @NoArgsConstructor
+  public static class Entry {
+    /**
+     * JAR 大小
+     */
+    private long size;
+    /**
+     * JAR 修改时间
+     */
+    private long mtime;
+    /**
+     * 是否为自动模块
+     */
+    private boolean automatic;
+    /**
+     * module-info.class 内容（Base64），自动模块为空
+     */
+    private String moduleInfo;
+    /**
+     * 模块中的包
+     */
+    private Set<String> packages;
+    /**
+     * 自动模块名称
+     */
+    private String name;
+    /**
+     * 自动模块版本
+     */
+    private String version;
+    /**
+     * 自动模块主类
+     */
+    private String mainClass;
+    /**
+     * 自动模块提供的服务
+     */
+    private Map<String, List<String>> provides;
+
+    /**
+     * 记录模块描述
+     *
+     * @param descriptor 模块描述
+     * @param jar        JAR
+     * @param attributes JAR 属性
+     * @return 缓存
+     * @throws IOException 读取 module-info 失败
+     */
+    static Entry of(ModuleDescriptor descriptor, Path jar, BasicFileAttributes attributes) throws IOException {
+      Entry entry = new Entry();
+      entry.setSize(attributes.size());
+      entry.setMtime(attributes.lastModifiedTime().toMillis());
+      entry.setPackages(new TreeSet<>(descriptor.packages()));
+      entry.setAutomatic(descriptor.isAutomatic());
+      if (descriptor.isAutomatic()) {
+        entry.setName(descriptor.name());
+        entry.setVersion(descriptor.rawVersion().orElse(null));
+        entry.setMainClass(descriptor.mainClass().orElse(null));
+        Map<String, List<String>> provides = new TreeMap<>();
+        descriptor.provides().forEach(provide -> provides.put(provide.service(), provide.providers()));
+        entry.setProvides(provides);
+        return entry;
+      }
+      try (JarFile jarFile = new JarFile(jar.toFile(), true, ZipFile.OPEN_READ, Runtime.version())) {
+        JarEntry moduleInfo = jarFile.getJarEntry(MODULE_INFO);
+        if (moduleInfo == null) {
+          throw new IOException("module-info.class not found: " + jar);
+        }
+        try (InputStream in = jarFile.getInputStream(moduleInfo)) {
+          entry.setModuleInfo(Base64.getEncoder().encodeToString(in.readAllBytes()));
+        }
+      }
+      return entry;
+    }
+
+    /**
+     * 构造模块描述
+     *
+     * @return 模块描述
+     */
+    ModuleDescriptor toDescriptor() {
+      if (!automatic) {
+        return ModuleDescriptor.read(ByteBuffer.wrap(Base64.getDecoder().decode(moduleInfo)), () -> packages);
+      }
+      ModuleDescriptor.Builder builder = ModuleDescriptor.newAutomaticModule(name).packages(packages);
+      if (version != null) {
+        builder.version(version);
+      }
+      if (mainClass != null) {
+        builder.mainClass(mainClass);
+      }
+      if (provides != null) {
+        provides.forEach(builder::provides);
+      }
+      return builder.build();
+    }
+  }
+
+  /**
+   * 从缓存构造的模块查找器
+   */
+  private static class CachedFinder implements ModuleFinder {
+    private final Map<String, ModuleReference> references;
+
+    CachedFinder(Map<String, ModuleReference> references) {
+      this.references = references;
+    }
+
+    @Override
+    public Optional<ModuleReference> find(String name) {
+      return Optional.ofNullable(references.get(name));
+    }
+
+    @Override
+    public Set<ModuleReference> findAll() {
+      return Set.copyOf(references.values());
+    }
+  }
+
+  /**
+   * 从缓存构造的模块，打开时才读取 JAR
+   */
+  private static class CachedReference extends ModuleReference {
+    private final Path jar;
+    private final Consumer<Path> openListener;
+
+    CachedReference(ModuleDescriptor descriptor, Path jar, Consumer<Path> openListener) {
+      super(descriptor, jar.toUri());
+      this.jar = jar;
+      this.openListener = openListener;
+    }
+
+    @Override
+    public ModuleReader open() throws IOException {
+      if (openListener != null) {
+        openListener.accept(jar);
+      }
+      return new JarReader(jar);
+    }
+  }
+
+  /**
+   * JDK 解析的模块，打开时回调后交给原模块读取
+   */
+  private static class ListeningReference extends ModuleReference {
+    private final ModuleReference delegate;
+    private final Path path;
+    private final Consumer<Path> openListener;
+
+    ListeningReference(ModuleReference delegate, Path path, Consumer<Path> openListener) {
+      super(delegate.descriptor(), delegate.location().orElse(null));
+      this.delegate = delegate;
+      this.path = path;
+      this.openListener = openListener;
+    }
+
+    @Override
+    public ModuleReader open() throws IOException {
+      openListener.accept(path);
+      return delegate.open();
+    }
+  }
+
+  /**
+   * JAR 模块读取，支持多版本 JAR
+   */
+  private static class JarReader implements ModuleReader {
+    private final String jarUri;
+    private final JarFile jarFile;
+
+    JarReader(Path jar) throws IOException {
+      this.jarUri = jar.toUri().toString();
+      this.jarFile = new JarFile(jar.toFile(), true, ZipFile.OPEN_READ, Runtime.version());
+    }
+
+    @Override
+    public Optional<URI> find(String name) {
+      JarEntry entry = jarFile.getJarEntry(name);
+      if (entry == null) {
+        return Optional.empty();
+      }
+      return Optional.of(URI.create("jar:" + jarUri + "!/" + encode(entry.getRealName())));
+    }
+
+    @Override
+    public Optional<InputStream> open(String name) throws IOException {
+      JarEntry entry = jarFile.getJarEntry(name);
+      if (entry == null) {
+        return Optional.empty();
+      }
+      return Optional.of(jarFile.getInputStream(entry));
+    }
+
+    @Override
+    public Stream<String> list() {
+      return jarFile.versionedStream().map(JarEntry::getName).collect(Collectors.toList()).stream();
+    }
+
+    @Override
+    public void close() throws IOException {
+      jarFile.close();
+    }
+
+    /**
+     * 编码 URI 路径
+     *
+     * @param name 条目名称
+     * @return 编码后的路径
+     */
+    private static String encode(String name) {
+      try {
+        return new URI(null, null, name, null).getRawPath();
+      } catch (URISyntaxException e) {
+        return name;
+      }
+    }
+  }
+}
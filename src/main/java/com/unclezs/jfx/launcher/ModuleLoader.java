@@ -28,6 +28,10 @@ public class ModuleLoader {
    * 根模块
    */
   private final String rootModule;
+  /**
+   * 模块描述缓存，为空则不使用缓存
+   */
+  private final ModuleCache cache;
   /**
    * 根模块的类加载器
    */
@@ -52,8 +56,20 @@ public class ModuleLoader {
    * @param rootModule 根模块
    */
   public ModuleLoader(Path[] modulePath, String rootModule) {
+    this(modulePath, rootModule, null);
+  }
+
+  /**
+   * 模块加载器
+   *
+   * @param modulePath 模块路径
+   * @param rootModule 根模块
+   * @param cache      模块描述缓存
+   */
+  public ModuleLoader(Path[] modulePath, String rootModule, ModuleCache cache) {
     this.modulePath = modulePath;
     this.rootModule = rootModule;
+    this.cache = cache;
     defineModuleLayer();
     this.classLoader = layer.findLoader(rootModule);
   }
@@ -62,12 +78,25 @@ public class ModuleLoader {
    * 根据传入的path列表及根模块定义layer
    */
   private void defineModuleLayer() {
-    ModuleFinder finder = ModuleFinder.of(this.modulePath);
+    LauncherEvents.ModuleLayerResolve event = LauncherEvents.ENABLED ? new LauncherEvents.ModuleLayerResolve() : null;
+    if (event != null) {
+      event.begin();
+    }
+    ModuleFinder finder = cache == null ? ModuleFinder.of(this.modulePath) : cache.finder(this.modulePath);
     ModuleLayer parentLayer = ModuleLayer.boot();
     Configuration configuration = parentLayer.configuration();
     Configuration appConfiguration = configuration.resolve(finder, ModuleFinder.ofSystem(), Set.of(this.rootModule));
     this.controller = ModuleLayer.defineModulesWithOneLoader(appConfiguration, List.of(parentLayer), ModuleLoader.class.getClassLoader());
     this.layer = this.controller.layer();
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.rootModule = rootModule;
+        event.modulePathEntries = modulePath.length;
+        event.resolvedModules = appConfiguration.modules().size();
+        event.commit();
+      }
+    }
   }
 
   /**
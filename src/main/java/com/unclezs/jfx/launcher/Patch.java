@@ -0,0 +1,64 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 资源的增量补丁，将旧版本文件升级为资源的当前版本
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/11 15:20
+ */
+@Data
+@NoArgsConstructor
+public class Patch implements Serializable {
+  /**
+   * 补丁文件相对于URL的路径
+   */
+  private String path;
+  /**
+   * 补丁文件大小
+   */
+  private Long size;
+  /**
+   * 补丁文件的 SHA-256
+   */
+  private String hash;
+  /**
+   * 适用的旧文件 SHA-256
+   */
+  private String fromHash;
+  /**
+   * 适用的旧版本号，没有 fromHash 时使用
+   */
+  private String fromVersion;
+
+  /**
+   * 补丁是否适用于本地文件
+   *
+   * @param localHash    本地文件摘要
+   * @param localVersion 本地版本
+   * @return true 适用
+   */
+  public boolean appliesTo(String localHash, String localVersion) {
+    if (fromHash != null && !fromHash.isBlank()) {
+      return HashUtils.matches(fromHash, localHash);
+    }
+    return fromVersion != null && fromVersion.equals(localVersion);
+  }
+
+  /**
+   * 转为可下载的资源，复用资源的下载、续传与校验
+   *
+   * @return 资源
+   */
+  public Resource toResource() {
+    Resource resource = new Resource();
+    resource.setPath(path);
+    resource.setSize(size);
+    resource.setHash(hash);
+    return resource;
+  }
+}
@@ -0,0 +1,177 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * 文件预读
+ * <p>
+ * 显示启动界面、检测更新期间在后台线程顺序读取 JAR 与本地库，让操作系统提前把文件放入页缓存，机械硬盘上效果明显。
+ * 读取顺序使用上次启动时文件实际被打开的顺序，没有记录的文件排在最后。应用开始启动时立即停止预读，避免与真正的读取争抢磁盘。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/25 19:48
+ */
+@Log
+public class Prefetcher {
+  /**
+   * 打开顺序记录文件名
+   */
+  public static final String FILE_NAME = "prefetch-order.json";
+  /**
+   * 每次读取的大小
+   */
+  private static final int CHUNK_SIZE = 1 << 20;
+  /**
+   * 记录文件
+   */
+  private final Path file;
+  /**
+   * 上次启动时的打开顺序
+   */
+  private final List<String> learned;
+  /**
+   * 本次启动的打开顺序
+   */
+  private final Set<String> opened = Collections.synchronizedSet(new LinkedHashSet<>());
+  /**
+   * 是否已取消
+   */
+  private volatile boolean cancelled;
+
+  /**
+   * 文件预读
+   *
+   * @param file    打开顺序记录文件
+   * @param learned 上次启动时的打开顺序
+   */
+  private Prefetcher(Path file, List<String> learned) {
+    this.file = file;
+    this.learned = learned;
+  }
+
+  /**
+   * 读取上次记录的打开顺序
+   *
+   * @param file 记录文件
+   * @return 预读
+   */
+  public static Prefetcher load(Path file) {
+    List<String> learned = new ArrayList<>();
+    if (Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        String[] paths = Manifest.GSON.fromJson(reader, String[].class);
+        if (paths != null) {
+          learned.addAll(List.of(paths));
+        }
+      } catch (Exception e) {
+        log.log(Level.WARNING, "读取预读顺序失败: " + file, e);
+      }
+    }
+    return new Prefetcher(file, learned);
+  }
+
+  /**
+   * 在后台线程开始预读，先按上次的打开顺序，再按给定顺序读取剩余文件
+   *
+   * @param files 需要预读的文件
+   */
+  public void start(List<Path> files) {
+    Set<String> pending = new LinkedHashSet<>();
+    Set<String> all = new LinkedHashSet<>();
+    files.forEach(path -> all.add(key(path)));
+    learned.stream().filter(all::contains).forEach(pending::add);
+    pending.addAll(all);
+    //noinspection AlibabaAvoidManuallyCreateThread
+    Thread thread = new Thread(() -> prefetch(pending), "Launcher-Prefetch");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.MIN_PRIORITY);
+    thread.start();
+  }
+
+  /**
+   * 停止预读
+   */
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * 记录文件被打开
+   *
+   * @param path 文件
+   */
+  public void opened(Path path) {
+    opened.add(key(path));
+  }
+
+  /**
+   * 保存本次的打开顺序，与上次一致时不写入
+   */
+  public void save() {
+    List<String> order;
+    synchronized (opened) {
+      order = new ArrayList<>(opened);
+    }
+    if (order.isEmpty() || order.equals(learned)) {
+      return;
+    }
+    try {
+      Files.writeString(file, Manifest.GSON.toJson(order));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "保存预读顺序失败: " + file, e);
+    }
+  }
+
+  /**
+   * 依次读取文件
+   *
+   * @param paths 文件
+   */
+  private void prefetch(Set<String> paths) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    long total = 0;
+    int count = 0;
+    for (String path : paths) {
+      if (cancelled) {
+        break;
+      }
+      try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+        int read;
+        while (!cancelled && (read = channel.read(buffer)) > -1) {
+          total += read;
+          buffer.clear();
+        }
+        count++;
+      } catch (IOException e) {
+        // 文件不存在等情况由后续的更新处理
+        log.log(Level.FINE, "预读失败: " + path, e);
+      }
+    }
+    log.log(Level.INFO, "预读 {0}/{1} 个文件，共 {2} bytes{3}", new Object[]{count, paths.size(), total, cancelled ? "（已取消）" : ""});
+  }
+
+  /**
+   * 文件的记录键
+   *
+   * @param path 文件
+   * @return 绝对路径
+   */
+  private static String key(Path path) {
+    return path.toAbsolutePath().normalize().toString();
+  }
+}
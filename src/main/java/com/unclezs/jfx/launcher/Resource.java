@@ -3,12 +3,18 @@ package com.unclezs.jfx.launcher;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * 更新资源
@@ -36,6 +42,22 @@ public class Resource implements Serializable {
    * 文件类型，普通文件null
    */
   private Type type;
+  /**
+   * 文件的 SHA-256，为空则只比较大小
+   */
+  private String hash;
+  /**
+   * 从旧版本升级的增量补丁，需要配置 hash 用于校验补丁结果
+   */
+  private List<Patch> patches;
+  /**
+   * 传输编码，服务端保存 path 加编码后缀的压缩文件，为空则直接传输原文件
+   */
+  private Encoding encoding;
+  /**
+   * 压缩后的传输大小，用于计算下载进度，为空则使用 size
+   */
+  private Long transferSize;
 
   /**
    * 资源
@@ -86,12 +108,33 @@ public class Resource implements Serializable {
    */
   public URL toUrl(String baseUri) {
     try {
-      return URI.create(baseUri).resolve(path).toURL();
+      return URI.create(baseUri).resolve(transferPath()).toURL();
     } catch (MalformedURLException e) {
       throw new LauncherException("格式错误的URL", e);
     }
   }
 
+  /**
+   * 传输的文件路径，有传输编码时为压缩文件的路径
+   *
+   * @return 路径
+   */
+  public String transferPath() {
+    return encoding == null ? path : path.concat(encoding.getSuffix());
+  }
+
+  /**
+   * 需要传输的字节数
+   *
+   * @return 有传输编码且配置了 transferSize 时为压缩后的大小，否则为文件大小
+   */
+  public long transferLength() {
+    if (encoding != null && transferSize != null) {
+      return transferSize;
+    }
+    return size == null ? 0 : size;
+  }
+
   /**
    * 相对于app的路径
    *
@@ -106,13 +149,49 @@ public class Resource implements Serializable {
   }
 
   /**
-   * 是否更新了
+   * 是否更新了，有摘要时每次都会重新计算
    *
    * @return true 有更新
    */
   public boolean hasNew() {
+    return hasNew(null);
+  }
+
+  /**
+   * 是否更新了，先比较大小，大小一致且配置了摘要时再比较摘要
+   *
+   * @param index 文件索引，为空则直接计算摘要
+   * @return true 有更新
+   */
+  public boolean hasNew(FileIndex index) {
     Path localPath = toLocalPath();
-    return Files.notExists(localPath) || localPath.toFile().length() != size;
+    try {
+      BasicFileAttributes attributes = FileIndex.attributes(localPath);
+      if (attributes == null || attributes.size() != size) {
+        return true;
+      }
+      if (hash == null || hash.isBlank()) {
+        return false;
+      }
+      String localHash = index == null ? HashUtils.sha256(localPath) : index.hash(localPath, attributes);
+      return !HashUtils.matches(hash, localHash);
+    } catch (IOException e) {
+      throw new LauncherException("读取本地文件失败: " + localPath, e);
+    }
+  }
+
+  /**
+   * 查找适用于本地文件的补丁
+   *
+   * @param localHash    本地文件摘要
+   * @param localVersion 本地版本
+   * @return 补丁，没有则返回 null
+   */
+  public Patch findPatch(String localHash, String localVersion) {
+    if (patches == null || hash == null || hash.isBlank()) {
+      return null;
+    }
+    return patches.stream().filter(patch -> patch.appliesTo(localHash, localVersion)).findFirst().orElse(null);
   }
 
   /**
@@ -144,4 +223,70 @@ public class Resource implements Serializable {
      */
     NATIVE_SYS
   }
+
+  /**
+   * 传输编码
+   */
+  public enum Encoding {
+    /**
+     * gzip
+     */
+    GZIP(".gz"),
+    /**
+     * deflate (zlib)
+     */
+    DEFLATE(".deflate");
+
+    /**
+     * 解压缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 65536;
+    /**
+     * 服务端压缩文件的后缀
+     */
+    private final String suffix;
+
+    Encoding(String suffix) {
+      this.suffix = suffix;
+    }
+
+    /**
+     * 服务端压缩文件的后缀
+     *
+     * @return 后缀
+     */
+    public String getSuffix() {
+      return suffix;
+    }
+
+    /**
+     * 包装为解压流
+     *
+     * @param in 压缩流
+     * @return 解压后的流
+     * @throws IOException 读取失败
+     */
+    public InputStream decode(InputStream in) throws IOException {
+      if (this == GZIP) {
+        return new GZIPInputStream(in, BUFFER_SIZE);
+      }
+      // 自带的 Inflater 不会随流关闭释放本地内存，需要手动 end
+      return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+        private boolean closed;
+
+        @Override
+        public void close() throws IOException {
+          if (closed) {
+            return;
+          }
+          closed = true;
+          try {
+            super.close();
+          } finally {
+            inf.end();
+          }
+        }
+      };
+    }
+  }
 }
@@ -0,0 +1,744 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+
+/**
+ * 单个资源的下载器
+ * <p>
+ * 先下载到 .part 文件，中断后下次启动通过 Range 请求续传。续传前使用摘要或 ETag/Last-Modified 校验，
+ * 保证旧版本的残留文件不会与新版本拼接，服务端不支持 Range 时退回完整下载。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/05 16:02
+ */
+@Log
+public class ResourceDownloader {
+  /**
+   * 未完成文件后缀
+   */
+  public static final String PART_SUFFIX = ".part";
+  /**
+   * 未完成文件的校验信息后缀
+   */
+  public static final String META_SUFFIX = ".part.json";
+  /**
+   * 解压中的文件后缀
+   */
+  public static final String DECODED_SUFFIX = ".part.decoded";
+  /**
+   * 连接超时
+   */
+  private static final int CONNECT_TIMEOUT = 10_000;
+  /**
+   * 读取超时
+   */
+  private static final int READ_TIMEOUT = 30_000;
+  /**
+   * 服务端限流
+   */
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  /**
+   * 资源
+   */
+  private final Resource resource;
+  /**
+   * 下载地址
+   */
+  private final URL url;
+  /**
+   * 目标文件
+   */
+  private final Path target;
+  /**
+   * 未完成的文件
+   */
+  private final Path partFile;
+  /**
+   * 未完成文件的校验信息
+   */
+  private final Path metaFile;
+  /**
+   * 有传输编码时解压后的文件
+   */
+  private final Path decodedFile;
+  /**
+   * 限速，为空则不限速
+   */
+  private List<TokenBucket> bandwidth = List.of();
+  /**
+   * 从发起请求到收到响应头的时间
+   */
+  private long responseNanos;
+  /**
+   * 本次从网络读取的字节数
+   */
+  private long receivedBytes;
+  /**
+   * 分段下载的最多分段数，不大于 1 不分段
+   */
+  private int segments = 1;
+  /**
+   * 不小于该大小的文件才分段下载
+   */
+  private long segmentThreshold = Long.MAX_VALUE;
+  /**
+   * 当前 .part 文件的校验信息
+   */
+  private PartMeta partMeta;
+
+  /**
+   * 资源下载器
+   *
+   * @param resource 资源
+   * @param url      下载地址
+   * @param target   目标文件
+   */
+  public ResourceDownloader(Resource resource, URL url, Path target) {
+    this.resource = resource;
+    this.url = url;
+    this.target = target;
+    this.partFile = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    this.metaFile = target.resolveSibling(target.getFileName() + META_SUFFIX);
+    this.decodedFile = target.resolveSibling(target.getFileName() + DECODED_SUFFIX);
+  }
+
+  /**
+   * 设置限速，下载时需要同时满足所有令牌桶
+   *
+   * @param buckets 令牌桶，为空的忽略
+   */
+  public void setBandwidth(TokenBucket... buckets) {
+    List<TokenBucket> list = new ArrayList<>();
+    for (TokenBucket bucket : buckets) {
+      if (bucket != null) {
+        list.add(bucket);
+      }
+    }
+    this.bandwidth = list;
+  }
+
+  /**
+   * 设置分段下载，服务端支持 Range 且文件不小于阈值时使用多个连接同时下载
+   *
+   * @param segments  同时下载的最多分段数，即可以使用的连接数
+   * @param threshold 分段下载的最小文件大小
+   */
+  public void setSegmentation(int segments, long threshold) {
+    this.segments = segments;
+    this.segmentThreshold = threshold;
+  }
+
+  /**
+   * 从发起请求到收到响应头的时间，用于判断服务端是否开始拥塞
+   *
+   * @return 纳秒，非 HTTP 下载为 0
+   */
+  public long getResponseNanos() {
+    return responseNanos;
+  }
+
+  /**
+   * 本次从网络读取的字节数，不包括续传前已有的部分，用于计算下载速度
+   *
+   * @return 字节数
+   */
+  public long getReceivedBytes() {
+    return receivedBytes;
+  }
+
+  /**
+   * 下载资源，成功后校验并移动到目标位置
+   *
+   * @param progress  新增的字节数回调，续传时已有的部分也会回调一次
+   * @param cancelled 是否已取消
+   * @return 下载文件的摘要
+   * @throws IOException 下载失败，未完成的部分会保留用于续传；服务端繁忙时为 {@link ServerBusyException}
+   */
+  public String download(LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+    Files.createDirectories(target.toAbsolutePath().getParent());
+    if (isSegmentable()) {
+      SegmentedDownloader segmented = new SegmentedDownloader(resource, url, target, segments, bandwidth);
+      String hash = segmented.download(progress, cancelled);
+      responseNanos = segmented.getResponseNanos();
+      receivedBytes = segmented.getReceivedBytes();
+      if (hash != null) {
+        discardPart();
+        return hash;
+      }
+    }
+    MessageDigest digest = HashUtils.newDigest();
+    long offset = resumableOffset();
+    long requestStart = System.nanoTime();
+    URLConnection connection = open(offset);
+    boolean append = false;
+    try {
+      if (connection instanceof HttpURLConnection) {
+        int code = ((HttpURLConnection) connection).getResponseCode();
+        responseNanos = System.nanoTime() - requestStart;
+        if (isBusy(code)) {
+          // 残留的部分仍然有效，稍后重试时继续续传
+          throw new ServerBusyException(String.format("服务端繁忙: %s [code=%d]", url, code), retryAfter((HttpURLConnection) connection));
+        }
+        if (code == HttpURLConnection.HTTP_PARTIAL) {
+          if (offset <= 0 || offset != rangeStart(connection)) {
+            discardPart();
+            throw new IOException(String.format("续传位置不一致: %s [offset=%d]", url, offset));
+          }
+          append = true;
+        } else if (code == HttpURLConnection.HTTP_OK) {
+          if (offset > 0) {
+            log.log(Level.INFO, "服务端未接受续传，重新下载: {0}", resource.getPath());
+          }
+        } else {
+          // 416 等情况说明残留的文件已经不可用
+          discardPart();
+          throw new IOException(String.format("下载失败: %s [code=%d]", url, code));
+        }
+      }
+      if (append) {
+        progress.accept(offset);
+        log.log(Level.INFO, "续传 {0} 从 {1} 字节开始", new Object[]{resource.getPath(), offset});
+      } else {
+        offset = 0;
+      }
+      saveMeta(connection, offset);
+      receivedBytes = 0;
+      LongConsumer received = read -> {
+        receivedBytes += read;
+        progress.accept(read);
+      };
+      Path output;
+      long size;
+      if (resource.getEncoding() == null) {
+        if (append) {
+          digestPart(digest);
+        }
+        size = offset + transfer(connection, offset, digest, received, cancelled);
+        output = partFile;
+      } else {
+        size = transferEncoded(connection, offset, digest, received, cancelled);
+        output = decodedFile;
+      }
+      if (resource.getSize() != null && size < resource.getSize()) {
+        // 连接提前断开，保留已下载的部分下次续传
+        throw new IOException(String.format("下载不完整: %s [expected=%d, actual=%d]", resource.getPath(), resource.getSize(), size));
+      }
+      String hash = HashUtils.toHex(digest.digest());
+      try {
+        verify(size, hash);
+      } catch (LauncherException e) {
+        discardPart();
+        throw e;
+      }
+      move(output, target);
+      discardPart();
+      return hash;
+    } finally {
+      if (connection instanceof HttpURLConnection) {
+        ((HttpURLConnection) connection).disconnect();
+      }
+    }
+  }
+
+  /**
+   * 是否使用分段下载，有传输编码时需要按顺序解压，不分段。
+   * 上次分段下载未完成时即使只有一个连接可用也继续按段续传
+   *
+   * @return true 分段下载
+   */
+  private boolean isSegmentable() {
+    boolean http = "http".equals(url.getProtocol()) || "https".equals(url.getProtocol());
+    if (!http || segments < 1 || resource.getEncoding() != null || resource.getSize() == null || resource.getSize() < segmentThreshold) {
+      return false;
+    }
+    return segments > 1 || Files.exists(target.resolveSibling(target.getFileName() + SegmentedDownloader.STATE_SUFFIX));
+  }
+
+  /**
+   * 从连接读取写入 .part 文件，读取与写入分别在两个线程进行
+   *
+   * @param connection 连接
+   * @param offset     续传位置，0 表示完整下载
+   * @param digest     摘要
+   * @param progress   进度回调
+   * @param cancelled  是否取消
+   * @return 本次写入的字节数
+   * @throws IOException 读写失败
+   */
+  private long transfer(URLConnection connection, long offset, MessageDigest digest, LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+    long written = 0;
+    byte[] buffer = BufferPool.acquireArray();
+    try (InputStream in = inputStream(connection);
+         ChannelWriter out = new ChannelWriter(partFile, offset, this::checkpoint)) {
+      int read;
+      while ((read = in.read(buffer)) > -1) {
+        if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+          throw new CancellationException("下载已取消: " + resource.getPath());
+        }
+        out.write(buffer, 0, read);
+        digest.update(buffer, 0, read);
+        written += read;
+        progress.accept(read);
+      }
+    } finally {
+      BufferPool.release(buffer);
+    }
+    return written;
+  }
+
+  /**
+   * 边下载边解压，.part 文件保存压缩数据用于续传，进度按压缩后的字节数计算。
+   * 续传时先解压本地已有的压缩数据，再接着解压网络数据，不需要重新下载。
+   *
+   * @param connection 连接
+   * @param offset     续传位置，0 表示完整下载
+   * @param digest     解压后内容的摘要
+   * @param progress   进度回调
+   * @param cancelled  是否取消
+   * @return 解压后的字节数
+   * @throws IOException 读写或解压失败
+   */
+  private long transferEncoded(URLConnection connection, long offset, MessageDigest digest, LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+    long written = 0;
+    byte[] buffer = BufferPool.acquireArray();
+    try (OutputStream raw = new ChannelWriter(partFile, offset, this::checkpoint);
+         InputStream network = new CopyingInputStream(inputStream(connection), raw, progress, cancelled);
+         InputStream compressed = offset > 0 ? new SequenceInputStream(Files.newInputStream(partFile), network) : network;
+         InputStream in = resource.getEncoding().decode(compressed);
+         OutputStream out = new ChannelWriter(decodedFile, 0, null)) {
+      int read;
+      while ((read = in.read(buffer)) > -1) {
+        out.write(buffer, 0, read);
+        digest.update(buffer, 0, read);
+        written += read;
+      }
+    } finally {
+      BufferPool.release(buffer);
+    }
+    return written;
+  }
+
+  /**
+   * 获取响应内容，配置了限速时按令牌桶读取
+   *
+   * @param connection 连接
+   * @return 输入流
+   * @throws IOException 读取失败
+   */
+  private InputStream inputStream(URLConnection connection) throws IOException {
+    InputStream in = connection.getInputStream();
+    return bandwidth.isEmpty() ? in : new ThrottledInputStream(in, bandwidth);
+  }
+
+  /**
+   * 打开连接，有可续传的部分时带上 Range 与 If-Range
+   *
+   * @param offset 续传位置
+   * @return 连接
+   * @throws IOException 连接失败
+   */
+  private URLConnection open(long offset) throws IOException {
+    URLConnection connection = url.openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT);
+    connection.setReadTimeout(READ_TIMEOUT);
+    if (offset > 0 && connection instanceof HttpURLConnection) {
+      connection.setRequestProperty("Range", "bytes=" + offset + "-");
+      // 服务端文件已变化时 If-Range 会让服务端返回完整内容
+      // ETag / Last-Modified 只对同一地址有效，换了镜像时由摘要保证拼接的是同一个文件
+      PartMeta meta = loadMeta();
+      if (meta != null && !isSameSource(meta)) {
+        log.log(Level.INFO, "从其他镜像续传: {0}", url);
+      } else if (meta != null && meta.getEtag() != null) {
+        connection.setRequestProperty("If-Range", meta.getEtag());
+      } else if (meta != null && meta.getLastModified() != null) {
+        connection.setRequestProperty("If-Range", meta.getLastModified());
+      }
+    }
+    return connection;
+  }
+
+  /**
+   * 计算可以续传的位置，无法确认残留文件属于当前版本时丢弃
+   *
+   * @return 续传位置，0 表示完整下载
+   * @throws IOException 读取失败
+   */
+  private long resumableOffset() throws IOException {
+    if (Files.notExists(partFile)) {
+      Files.deleteIfExists(metaFile);
+      return 0;
+    }
+    PartMeta meta = loadMeta();
+    long fileSize = Files.size(partFile);
+    // 最后一次记录之后写入的数据可能没有刷盘，以记录的有效长度为准
+    long length = meta != null && meta.getLength() != null ? Math.min(meta.getLength(), fileSize) : fileSize;
+    boolean valid = meta != null && length > 0 && isSameVersion(meta);
+    // 压缩传输但没有配置 transferSize 时无法得知完整的传输大小
+    boolean knownLength = resource.getEncoding() == null || resource.getTransferSize() != null;
+    if (!valid || (knownLength && length >= resource.transferLength())) {
+      discardPart();
+      return 0;
+    }
+    if (length < fileSize) {
+      try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+        channel.truncate(length);
+      }
+    }
+    return length;
+  }
+
+  /**
+   * 残留文件是否属于当前要下载的版本
+   *
+   * @param meta 残留文件的校验信息
+   * @return true 同一版本
+   */
+  private boolean isSameVersion(PartMeta meta) {
+    if (!Objects.equals(meta.getSize(), resource.getSize()) || meta.getEncoding() != resource.getEncoding()) {
+      return false;
+    }
+    if (resource.getHash() != null && !resource.getHash().isBlank()) {
+      return HashUtils.matches(resource.getHash(), meta.getHash());
+    }
+    // 没有摘要时只能依赖服务端的 ETag / Last-Modified，换了镜像无法确认
+    return isSameSource(meta) && (meta.getEtag() != null || meta.getLastModified() != null);
+  }
+
+  /**
+   * 残留文件是否从当前地址下载
+   *
+   * @param meta 残留文件的校验信息
+   * @return true 同一地址，或者是没有记录地址的旧版本校验信息
+   */
+  private boolean isSameSource(PartMeta meta) {
+    return meta.getUrl() == null || meta.getUrl().equals(url.toString());
+  }
+
+  /**
+   * 读取残留部分计算摘要
+   *
+   * @param digest 摘要
+   * @throws IOException 读取失败
+   */
+  private void digestPart(MessageDigest digest) throws IOException {
+    byte[] buffer = BufferPool.acquireArray();
+    try (InputStream in = Files.newInputStream(partFile)) {
+      int read;
+      while ((read = in.read(buffer)) > -1) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      BufferPool.release(buffer);
+    }
+  }
+
+  /**
+   * 校验下载的文件
+   *
+   * @param size 实际大小
+   * @param hash 实际摘要
+   */
+  private void verify(long size, String hash) {
+    if (resource.getSize() != null && resource.getSize() != size) {
+      throw new LauncherException(String.format("文件大小校验失败: %s [expected=%d, actual=%d]", resource.getPath(), resource.getSize(), size));
+    }
+    if (resource.getHash() != null && !resource.getHash().isBlank() && !HashUtils.matches(resource.getHash(), hash)) {
+      throw new LauncherException(String.format("文件摘要校验失败: %s [expected=%s, actual=%s]", resource.getPath(), resource.getHash(), hash));
+    }
+  }
+
+  /**
+   * 保存残留文件的校验信息
+   *
+   * @param connection 连接
+   * @param length     .part 文件已有的有效长度
+   * @throws IOException 写入失败
+   */
+  private synchronized void saveMeta(URLConnection connection, long length) throws IOException {
+    PartMeta meta = new PartMeta();
+    meta.setSize(resource.getSize());
+    meta.setHash(resource.getHash());
+    meta.setEncoding(resource.getEncoding());
+    meta.setUrl(url.toString());
+    meta.setEtag(connection.getHeaderField("ETag"));
+    meta.setLastModified(connection.getHeaderField("Last-Modified"));
+    meta.setLength(length);
+    partMeta = meta;
+    Files.writeString(metaFile, Manifest.GSON.toJson(meta));
+  }
+
+  /**
+   * 记录 .part 文件已经写入的有效长度，由写入线程定期调用
+   *
+   * @param length 有效长度
+   */
+  private synchronized void checkpoint(long length) {
+    if (partMeta == null) {
+      return;
+    }
+    partMeta.setLength(length);
+    try {
+      Files.writeString(metaFile, Manifest.GSON.toJson(partMeta));
+    } catch (IOException e) {
+      log.log(Level.WARNING, "保存续传信息失败: " + metaFile, e);
+    }
+  }
+
+  /**
+   * 读取残留文件的校验信息
+   *
+   * @return 校验信息，不存在或损坏返回 null
+   */
+  private PartMeta loadMeta() {
+    if (Files.notExists(metaFile)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+      return Manifest.GSON.fromJson(reader, PartMeta.class);
+    } catch (Exception e) {
+      log.log(Level.WARNING, "读取续传信息失败: " + metaFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * 删除残留文件
+   *
+   * @throws IOException 删除失败
+   */
+  private void discardPart() throws IOException {
+    Files.deleteIfExists(partFile);
+    Files.deleteIfExists(metaFile);
+    Files.deleteIfExists(decodedFile);
+  }
+
+  /**
+   * 解析 Content-Range 的起始位置
+   *
+   * @param connection 连接
+   * @return 起始位置，无法解析返回 -1
+   */
+  static long rangeStart(URLConnection connection) {
+    // Content-Range: bytes 100-999/1000
+    String range = connection.getHeaderField("Content-Range");
+    if (range == null || !range.startsWith("bytes ")) {
+      return -1;
+    }
+    int end = range.indexOf('-');
+    try {
+      return Long.parseLong(range.substring(6, end).trim());
+    } catch (RuntimeException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * 服务端是否繁忙
+   *
+   * @param code 响应码
+   * @return true 429 或 503
+   */
+  static boolean isBusy(int code) {
+    return code == HTTP_TOO_MANY_REQUESTS || code == HttpURLConnection.HTTP_UNAVAILABLE;
+  }
+
+  /**
+   * 解析 Retry-After，支持秒数与 HTTP 日期
+   *
+   * @param connection 连接
+   * @return 毫秒，没有或无法解析返回 -1
+   */
+  static long retryAfter(HttpURLConnection connection) {
+    String value = connection.getHeaderField("Retry-After");
+    if (value == null || value.isBlank()) {
+      return -1;
+    }
+    try {
+      return Math.max(0, Long.parseLong(value.trim()) * 1000);
+    } catch (NumberFormatException e) {
+      long date = connection.getHeaderFieldDate("Retry-After", -1);
+      return date < 0 ? -1 : Math.max(0, date - System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * 移动文件，优先使用原子移动
+   *
+   * @param source 源文件
+   * @param target 目标文件
+   * @throws IOException 移动失败
+   */
+  public static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * 读取时把数据同时写入另一个输出流，并回调进度、检查是否取消
+   */
+  private final class CopyingInputStream extends FilterInputStream {
+    private final OutputStream copy;
+    private final LongConsumer progress;
+    private final BooleanSupplier cancelled;
+
+    private CopyingInputStream(InputStream in, OutputStream copy, LongConsumer progress, BooleanSupplier cancelled) {
+      super(in);
+      this.copy = copy;
+      this.progress = progress;
+      this.cancelled = cancelled;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+        throw new CancellationException("下载已取消: " + resource.getPath());
+      }
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        copy.write(b, off, read);
+        progress.accept(read);
+      }
+      return read;
+    }
+  }
+
+  /**
+   * 按令牌桶限速读取
+   */
+  static final class ThrottledInputStream extends FilterInputStream {
+    /**
+     * 单次读取的最大字节数，避免一次欠账过多导致长时间停顿
+     */
+    private static final int MAX_CHUNK = 16384;
+    private final List<TokenBucket> buckets;
+
+    ThrottledInputStream(InputStream in, List<TokenBucket> buckets) {
+      super(in);
+      this.buckets = buckets;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, Math.min(len, MAX_CHUNK));
+      if (read > 0) {
+        try {
+          for (TokenBucket bucket : buckets) {
+            bucket.acquire(read);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new CancellationException("下载已取消");
+        }
+      }
+      return read;
+    }
+  }
+
+  /**
+   * 服务端繁忙（429/503），稍后可以重试
+   */
+  public static class ServerBusyException extends IOException {
+    /**
+     * 服务端要求的等待时间
+     */
+    private final long retryAfterMillis;
+
+    /**
+     * 服务端繁忙
+     *
+     * @param message          信息
+     * @param retryAfterMillis 服务端要求的等待时间，没有为 -1
+     */
+    public ServerBusyException(String message, long retryAfterMillis) {
+      super(message);
+      this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * 服务端要求的等待时间
+     *
+     * @return 毫秒，没有为 -1
+     */
+    public long getRetryAfterMillis() {
+      return retryAfterMillis;
+    }
+  }
+
+  /**
+   * 未完成文件的校验信息
+   */
+  @Data
+  @NoArgsConstructor
+  public static class PartMeta {
+    /**
+     * 期望的大小
+     */
+    private Long size;
+    /**
+     * 期望的摘要
+     */
+    private String hash;
+    /**
+     * 传输编码，.part 中保存的是压缩数据
+     */
+    private Resource.Encoding encoding;
+    /**
+     * 下载地址
+     */
+    private String url;
+    /**
+     * 服务端 ETag
+     */
+    private String etag;
+    /**
+     * 服务端 Last-Modified
+     */
+    private String lastModified;
+    /**
+     * 已经刷盘的有效长度，异常退出时之后的数据可能不完整，不能直接以文件大小作为续传位置
+     */
+    private Long length;
+  }
+}
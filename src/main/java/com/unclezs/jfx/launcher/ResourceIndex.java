@@ -0,0 +1,87 @@
+package com.unclezs.jfx.launcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 当前平台的资源索引
+ * <p>
+ * 解析配置时构建一次，之后按路径、类型查找资源不再遍历资源列表
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/28 20:42
+ */
+class ResourceIndex {
+  /**
+   * 当前平台的资源，保持配置中的顺序
+   */
+  private final List<Resource> resources = new ArrayList<>();
+  /**
+   * 路径 -> 资源
+   */
+  private final Map<String, Resource> byPath = new HashMap<>();
+  /**
+   * 类型 -> 资源，普通文件的类型为 null
+   */
+  private final Map<Resource.Type, List<Resource>> byType = new HashMap<>();
+
+  /**
+   * 为资源列表建立索引
+   *
+   * @param resources 所有平台的资源
+   * @return 索引
+   */
+  static ResourceIndex of(List<Resource> resources) {
+    ResourceIndex index = new ResourceIndex();
+    if (resources != null) {
+      resources.forEach(index::add);
+    }
+    return index;
+  }
+
+  /**
+   * 添加资源，不属于当前平台的资源忽略
+   *
+   * @param resource 资源
+   */
+  void add(Resource resource) {
+    if (!resource.currentPlatform()) {
+      return;
+    }
+    resources.add(resource);
+    byPath.put(resource.getPath(), resource);
+    byType.computeIfAbsent(resource.getType(), type -> new ArrayList<>()).add(resource);
+  }
+
+  /**
+   * 当前平台的资源
+   *
+   * @return 只读列表
+   */
+  List<Resource> resources() {
+    return Collections.unmodifiableList(resources);
+  }
+
+  /**
+   * 指定类型的资源
+   *
+   * @param type 类型
+   * @return 只读列表
+   */
+  List<Resource> resources(Resource.Type type) {
+    return Collections.unmodifiableList(byType.getOrDefault(type, Collections.emptyList()));
+  }
+
+  /**
+   * 按路径查找资源
+   *
+   * @param path 资源路径
+   * @return 资源，不存在返回 null
+   */
+  Resource find(String path) {
+    return byPath.get(path);
+  }
+}
@@ -0,0 +1,264 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 按内容摘要寻址的本地资源仓库
+ * <p>
+ * 文件按 SHA-256 保存在 objects 下，资源路径通过硬链接（不支持时复制）指向仓库中的文件，
+ * 多个应用或版本共享同一个仓库时相同的文件只保存、下载一次。每个安装在 refs 下记录自己引用的摘要，
+ * 没有任何安装引用的文件会被回收。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/14 22:10
+ */
+@Log
+public class ResourceStore {
+  /**
+   * 文件目录
+   */
+  private static final String OBJECTS_DIR = "objects";
+  /**
+   * 引用目录
+   */
+  private static final String REFS_DIR = "refs";
+  /**
+   * 用户目录前缀
+   */
+  private static final String HOME_PREFIX = "~";
+  /**
+   * 仓库目录
+   */
+  private final Path root;
+  /**
+   * 本地文件索引，校验仓库文件未被修改
+   */
+  private final FileIndex fileIndex;
+
+  /**
+   * 资源仓库
+   *
+   * @param root      仓库目录
+   * @param fileIndex 本地文件索引
+   */
+  public ResourceStore(Path root, FileIndex fileIndex) {
+    this.root = root;
+    this.fileIndex = fileIndex;
+  }
+
+  /**
+   * 根据配置创建仓库
+   *
+   * @param storePath 仓库目录，支持 ~ 开头表示用户目录，为空则不启用
+   * @param fileIndex 本地文件索引
+   * @return 仓库，未启用返回 null
+   */
+  public static ResourceStore of(String storePath, FileIndex fileIndex) {
+    if (storePath == null || storePath.isBlank()) {
+      return null;
+    }
+    Path root;
+    if (storePath.startsWith(HOME_PREFIX)) {
+      root = Path.of(System.getProperty("user.home"), storePath.substring(HOME_PREFIX.length()).replaceFirst("^[/\\\\]", ""));
+    } else {
+      root = Path.of(storePath).toAbsolutePath();
+    }
+    return new ResourceStore(root.normalize(), fileIndex);
+  }
+
+  /**
+   * 仓库中是否已有资源的文件，有则链接到目标位置
+   *
+   * @param resource 资源
+   * @param target   目标文件
+   * @return true 已从仓库中取得
+   */
+  public boolean materialize(Resource resource, Path target) {
+    String hash = resource.getHash();
+    if (hash == null || hash.isBlank()) {
+      return false;
+    }
+    Path object = objectPath(hash);
+    try {
+      BasicFileAttributes attributes = FileIndex.attributes(object);
+      if (attributes == null || resource.getSize() == null || attributes.size() != resource.getSize()) {
+        return false;
+      }
+      // 仓库文件被改动过则丢弃
+      String actual = fileIndex == null ? HashUtils.sha256(object) : fileIndex.hash(object, attributes);
+      if (!HashUtils.matches(hash, actual)) {
+        log.log(Level.WARNING, "仓库文件已损坏，删除: {0}", object);
+        Files.deleteIfExists(object);
+        return false;
+      }
+      Files.createDirectories(target.toAbsolutePath().getParent());
+      link(object, target);
+      return true;
+    } catch (IOException e) {
+      log.log(Level.WARNING, "从仓库获取文件失败: " + object, e);
+      return false;
+    }
+  }
+
+  /**
+   * 将已校验的文件加入仓库
+   *
+   * @param file 文件
+   * @param hash 文件摘要
+   */
+  public void add(Path file, String hash) {
+    if (hash == null || hash.isBlank()) {
+      return;
+    }
+    Path object = objectPath(hash);
+    try {
+      if (Files.exists(object)) {
+        return;
+      }
+      Files.createDirectories(object.getParent());
+      // 先链接到临时文件再原子移动，避免其他进程读到不完整的文件
+      Path temp = object.resolveSibling(object.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+      Files.deleteIfExists(temp);
+      link(file, temp);
+      ResourceDownloader.move(temp, object);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "加入仓库失败: " + file, e);
+    }
+  }
+
+  /**
+   * 记录当前安装引用的文件，并回收没有任何安装引用的文件
+   *
+   * @param owner  安装标识
+   * @param hashes 当前引用的摘要
+   */
+  public void retain(String owner, Collection<String> hashes) {
+    try {
+      Path refs = root.resolve(REFS_DIR);
+      Files.createDirectories(refs);
+      Set<String> ownHashes = hashes.stream().filter(hash -> hash != null && !hash.isBlank()).map(String::toLowerCase).collect(Collectors.toCollection(TreeSet::new));
+      Path refFile = refs.resolve(ownerName(owner) + ".json");
+      Path temp = refFile.resolveSibling(refFile.getFileName() + ".tmp");
+      Files.writeString(temp, Manifest.GSON.toJson(ownHashes));
+      ResourceDownloader.move(temp, refFile);
+      gc();
+    } catch (IOException e) {
+      log.log(Level.WARNING, "更新仓库引用失败: " + root, e);
+    }
+  }
+
+  /**
+   * 回收没有被任何安装引用的文件
+   *
+   * @throws IOException 读取失败
+   */
+  public void gc() throws IOException {
+    Path objects = root.resolve(OBJECTS_DIR);
+    if (Files.notExists(objects)) {
+      return;
+    }
+    Set<String> referenced = referencedHashes();
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(objects)) {
+      files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    long freed = 0;
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      if (!name.endsWith(".tmp") && !referenced.contains(name)) {
+        freed += Files.size(file);
+        Files.deleteIfExists(file);
+        if (fileIndex != null) {
+          fileIndex.remove(file);
+        }
+      }
+    }
+    if (freed > 0) {
+      log.log(Level.INFO, "仓库回收完成，释放 {0} bytes", freed);
+    }
+  }
+
+  /**
+   * 所有安装引用的摘要
+   *
+   * @return 摘要集合
+   * @throws IOException 读取失败
+   */
+  private Set<String> referencedHashes() throws IOException {
+    Set<String> referenced = new HashSet<>();
+    Path refs = root.resolve(REFS_DIR);
+    if (Files.notExists(refs)) {
+      return referenced;
+    }
+    List<Path> refFiles;
+    try (Stream<Path> stream = Files.list(refs)) {
+      refFiles = stream.filter(file -> file.getFileName().toString().endsWith(".json")).collect(Collectors.toList());
+    }
+    for (Path refFile : refFiles) {
+      try (Reader reader = Files.newBufferedReader(refFile, StandardCharsets.UTF_8)) {
+        String[] hashes = Manifest.GSON.fromJson(reader, String[].class);
+        if (hashes != null) {
+          referenced.addAll(List.of(hashes));
+        }
+      } catch (Exception e) {
+        // 无法确认引用时保守起见不回收
+        throw new IOException("读取仓库引用失败: " + refFile, e);
+      }
+    }
+    return referenced;
+  }
+
+  /**
+   * 仓库中文件的位置
+   *
+   * @param hash 摘要
+   * @return 文件
+   */
+  private Path objectPath(String hash) {
+    String name = hash.toLowerCase();
+    return root.resolve(OBJECTS_DIR).resolve(name.substring(0, 2)).resolve(name);
+  }
+
+  /**
+   * 创建硬链接，不支持时复制
+   *
+   * @param source 源文件
+   * @param target 目标文件
+   * @throws IOException 创建失败
+   */
+  private static void link(Path source, Path target) throws IOException {
+    try {
+      Files.deleteIfExists(target);
+      Files.createLink(target, source);
+    } catch (UnsupportedOperationException | IOException e) {
+      // 跨分区、文件系统不支持等情况无法硬链接
+      Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * 安装标识转为文件名
+   *
+   * @param owner 安装标识
+   * @return 文件名
+   */
+  private static String ownerName(String owner) {
+    return HashUtils.toHex(HashUtils.newDigest().digest(owner.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+  }
+}
@@ -0,0 +1,579 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+
+/**
+ * 单个大文件的分段下载
+ * <p>
+ * 服务端声明 Accept-Ranges: bytes 时把文件按字节范围分成多段，最多 segmentCount 个连接同时下载，按位置写入同一个文件。
+ * 每段出错时独立重试，服务端繁忙时停止全部分段交给调用方处理。各段的下载位置定期刷盘后保存在 .segments.json 中，
+ * 配置了摘要的资源中断后（包括进程被结束、换镜像后）可以按段续传。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/05 21:10
+ */
+@Log
+class SegmentedDownloader {
+  /**
+   * 分段下载中的文件后缀
+   */
+  static final String DATA_SUFFIX = ".segments";
+  /**
+   * 各段下载位置的记录文件后缀
+   */
+  static final String STATE_SUFFIX = ".segments.json";
+  /**
+   * 每段的最小大小，避免过小的分段浪费连接
+   */
+  private static final long MIN_SEGMENT_SIZE = 4L << 20;
+  /**
+   * 每段的重试次数
+   */
+  private static final int SEGMENT_RETRIES = 3;
+  /**
+   * 首次重试的等待时间，之后每次翻倍
+   */
+  private static final long RETRY_DELAY_MILLIS = 1000;
+  /**
+   * 连接超时
+   */
+  private static final int CONNECT_TIMEOUT = 10_000;
+  /**
+   * 读取超时
+   */
+  private static final int READ_TIMEOUT = 30_000;
+  /**
+   * 资源
+   */
+  private final Resource resource;
+  /**
+   * 下载地址
+   */
+  private final URL url;
+  /**
+   * 目标文件
+   */
+  private final Path target;
+  /**
+   * 分段下载中的文件
+   */
+  private final Path dataFile;
+  /**
+   * 各段下载位置的记录
+   */
+  private final Path stateFile;
+  /**
+   * 同时下载的最多分段数
+   */
+  private final int segmentCount;
+  /**
+   * 限速
+   */
+  private final List<TokenBucket> bandwidth;
+  /**
+   * 本次从网络读取的字节数
+   */
+  private final AtomicLong receivedBytes = new AtomicLong();
+  /**
+   * HEAD 请求的响应时间
+   */
+  private long responseNanos;
+  /**
+   * 出错或取消时通知其他分段停止
+   */
+  private volatile boolean stopped;
+  /**
+   * 第一个导致停止的异常，其余分段随后抛出的取消异常不再上报
+   */
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+  /**
+   * 保存进度时的锁，与进度回调分开，刷盘时不阻塞其他分段上报进度
+   */
+  private final Object stateLock = new Object();
+
+  /**
+   * 分段下载
+   *
+   * @param resource     资源，必须配置了大小且没有传输编码
+   * @param url          下载地址
+   * @param target       目标文件
+   * @param segmentCount 同时下载的最多分段数，即可以使用的连接数
+   * @param bandwidth    限速
+   */
+  SegmentedDownloader(Resource resource, URL url, Path target, int segmentCount, List<TokenBucket> bandwidth) {
+    this.resource = resource;
+    this.url = url;
+    this.target = target;
+    this.dataFile = target.resolveSibling(target.getFileName() + DATA_SUFFIX);
+    this.stateFile = target.resolveSibling(target.getFileName() + STATE_SUFFIX);
+    this.segmentCount = segmentCount;
+    this.bandwidth = bandwidth;
+  }
+
+  /**
+   * 分段下载，成功后校验并移动到目标位置
+   *
+   * @param progress  新增的字节数回调，续传时已有的部分也会回调一次
+   * @param cancelled 是否已取消
+   * @return 下载文件的摘要，服务端不支持分段下载时返回 null
+   * @throws IOException 下载失败，已完成的部分会保留用于续传；服务端繁忙时为 {@link ResourceDownloader.ServerBusyException}
+   */
+  String download(LongConsumer progress, BooleanSupplier cancelled) throws IOException {
+    long size = resource.getSize();
+    String validator = probe(size);
+    if (validator == null) {
+      return null;
+    }
+    List<Segment> segments = resume(size, validator);
+    if (segments == null) {
+      segments = plan(size);
+      Files.deleteIfExists(dataFile);
+    }
+    long existing = segments.stream().mapToLong(segment -> segment.position - segment.start).sum();
+    if (existing > 0) {
+      progress.accept(existing);
+      log.log(Level.INFO, "分段续传 {0}，已完成 {1} 字节", new Object[]{resource.getPath(), existing});
+    }
+    LongConsumer received = read -> {
+      receivedBytes.addAndGet(read);
+      synchronized (this) {
+        progress.accept(read);
+      }
+    };
+    try (FileChannel channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      // 各段按位置写入，尚未下载的范围留空，续传位置以 .segments.json 为准
+      List<Segment> planned = segments;
+      Runnable checkpoint = () -> saveState(channel, size, validator, planned);
+      try {
+        downloadSegments(segments, channel, validator, received, cancelled, checkpoint);
+      } finally {
+        checkpoint.run();
+      }
+    }
+    String hash = HashUtils.sha256(dataFile);
+    if (resource.getHash() != null && !resource.getHash().isBlank() && !HashUtils.matches(resource.getHash(), hash)) {
+      discard();
+      throw new LauncherException(String.format("文件摘要校验失败: %s [expected=%s, actual=%s]", resource.getPath(), resource.getHash(), hash));
+    }
+    ResourceDownloader.move(dataFile, target);
+    Files.deleteIfExists(stateFile);
+    return hash;
+  }
+
+  /**
+   * 本次从网络读取的字节数
+   *
+   * @return 字节数
+   */
+  long getReceivedBytes() {
+    return receivedBytes.get();
+  }
+
+  /**
+   * HEAD 请求的响应时间
+   *
+   * @return 纳秒
+   */
+  long getResponseNanos() {
+    return responseNanos;
+  }
+
+  /**
+   * 确认服务端支持按字节范围下载，且文件大小与配置一致
+   *
+   * @param size 文件大小
+   * @return 续传校验用的 ETag / Last-Modified，没有时为空字符串，不支持分段下载返回 null
+   * @throws IOException 请求失败
+   */
+  private String probe(long size) throws IOException {
+    long start = System.nanoTime();
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT);
+    connection.setReadTimeout(READ_TIMEOUT);
+    connection.setRequestMethod("HEAD");
+    try {
+      int code = connection.getResponseCode();
+      responseNanos = System.nanoTime() - start;
+      if (ResourceDownloader.isBusy(code)) {
+        throw new ResourceDownloader.ServerBusyException(String.format("服务端繁忙: %s [code=%d]", url, code), ResourceDownloader.retryAfter(connection));
+      }
+      boolean ranges = "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"));
+      if (code != HttpURLConnection.HTTP_OK || !ranges || connection.getContentLengthLong() != size) {
+        log.log(Level.INFO, "服务端不支持分段下载，使用单连接下载: {0}", url);
+        return null;
+      }
+      String etag = connection.getHeaderField("ETag");
+      String lastModified = connection.getHeaderField("Last-Modified");
+      return etag != null ? etag : lastModified != null ? lastModified : "";
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * 按大小分段
+   *
+   * @param size 文件大小
+   * @return 分段
+   */
+  private List<Segment> plan(long size) {
+    int count = (int) Math.max(1, Math.min(segmentCount, size / MIN_SEGMENT_SIZE));
+    long length = (size + count - 1) / count;
+    List<Segment> segments = new ArrayList<>(count);
+    for (long start = 0; start < size; start += length) {
+      segments.add(new Segment(start, start, Math.min(size, start + length) - 1));
+    }
+    return segments;
+  }
+
+  /**
+   * 读取上次的分段进度，无法确认属于当前版本时返回 null
+   *
+   * @param size      文件大小
+   * @param validator 服务端的 ETag / Last-Modified
+   * @return 分段
+   */
+  private List<Segment> resume(long size, String validator) {
+    if (Files.notExists(stateFile) || Files.notExists(dataFile)) {
+      return null;
+    }
+    SegmentState state;
+    try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+      state = Manifest.GSON.fromJson(reader, SegmentState.class);
+    } catch (Exception e) {
+      log.log(Level.WARNING, "读取分段进度失败: " + stateFile, e);
+      return null;
+    }
+    if (state == null || state.getPositions() == null || state.getEnds() == null || state.getSize() == null || state.getSize() != size) {
+      return null;
+    }
+    // 有摘要时由摘要保证拼接的是同一个文件，可以跨镜像续传，否则只能依赖服务端的 ETag / Last-Modified
+    boolean sameVersion = resource.getHash() != null && !resource.getHash().isBlank()
+      ? HashUtils.matches(resource.getHash(), state.getHash())
+      : !validator.isEmpty() && validator.equals(state.getValidator());
+    if (!sameVersion) {
+      return null;
+    }
+    List<Segment> segments = new ArrayList<>();
+    long start = 0;
+    for (int i = 0; i < state.getPositions().length && i < state.getEnds().length; i++) {
+      long position = state.getPositions()[i];
+      long end = state.getEnds()[i];
+      if (position < start || position > end + 1) {
+        return null;
+      }
+      segments.add(new Segment(start, position, end));
+      start = end + 1;
+    }
+    return start == size ? segments : null;
+  }
+
+  /**
+   * 刷盘后保存各段的下载位置，由各分段定期调用，结束时再调用一次
+   *
+   * @param channel   文件
+   * @param size      文件大小
+   * @param validator 服务端的 ETag / Last-Modified
+   * @param segments  分段
+   */
+  private void saveState(FileChannel channel, long size, String validator, List<Segment> segments) {
+    SegmentState state = new SegmentState();
+    state.setSize(size);
+    state.setHash(resource.getHash());
+    state.setValidator(validator);
+    state.setEnds(segments.stream().mapToLong(segment -> segment.end).toArray());
+    synchronized (stateLock) {
+      // 先记下位置再刷盘，记录的位置之前的数据都已经落盘
+      state.setPositions(segments.stream().mapToLong(segment -> segment.position).toArray());
+      try {
+        if (channel.isOpen()) {
+          channel.force(false);
+        }
+        Files.writeString(stateFile, Manifest.GSON.toJson(state));
+      } catch (IOException e) {
+        log.log(Level.WARNING, "保存分段进度失败: " + stateFile, e);
+      }
+    }
+  }
+
+  /**
+   * 同时下载未完成的分段，同时进行的分段不超过 segmentCount，任意一段失败会让其余分段停止
+   *
+   * @param segments   分段
+   * @param channel    文件
+   * @param validator  服务端的 ETag / Last-Modified
+   * @param progress   进度回调
+   * @param cancelled  是否已取消
+   * @param checkpoint 保存进度
+   * @throws IOException 下载失败
+   */
+  private void downloadSegments(List<Segment> segments, FileChannel channel, String validator, LongConsumer progress, BooleanSupplier cancelled,
+                                Runnable checkpoint) throws IOException {
+    List<Segment> pending = new ArrayList<>();
+    for (Segment segment : segments) {
+      if (!segment.isDone()) {
+        pending.add(segment);
+      }
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+    AtomicInteger threadIndex = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(pending.size(), segmentCount)), r -> {
+      Thread thread = new Thread(r, "Launcher-Segment-" + threadIndex.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    ExecutorCompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+    boolean interrupted = false;
+    try {
+      for (Segment segment : pending) {
+        completionService.submit(() -> {
+          downloadSegment(segment, channel, validator, progress, cancelled, checkpoint);
+          return null;
+        });
+      }
+      for (int i = 0; i < pending.size(); i++) {
+        completionService.take().get();
+      }
+    } catch (InterruptedException e) {
+      interrupted = true;
+      throw new CancellationException("下载已取消: " + resource.getPath());
+    } catch (ExecutionException e) {
+      Throwable cause = failure.get() == null ? e.getCause() : failure.get();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      // 不中断分段线程，中断会关闭共用的 FileChannel，等待各段自行停止后再保存进度
+      stopped = true;
+      executor.shutdown();
+      try {
+        executor.awaitTermination(READ_TIMEOUT, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * 下载一段，失败后单独重试。服务端繁忙时不在这里等待，停止全部分段后交给调度器退避或换镜像
+   *
+   * @param segment    分段
+   * @param channel    文件
+   * @param validator  服务端的 ETag / Last-Modified
+   * @param progress   进度回调
+   * @param cancelled  是否已取消
+   * @param checkpoint 保存进度
+   * @throws IOException          超过重试次数或服务端繁忙
+   * @throws InterruptedException 等待重试时被中断
+   */
+  private void downloadSegment(Segment segment, FileChannel channel, String validator, LongConsumer progress, BooleanSupplier cancelled,
+                               Runnable checkpoint) throws IOException, InterruptedException {
+    for (int attempt = 0; ; attempt++) {
+      try {
+        transferSegment(segment, channel, validator, progress, cancelled, checkpoint);
+        return;
+      } catch (IOException e) {
+        if (e instanceof ResourceDownloader.ServerBusyException || attempt >= SEGMENT_RETRIES || stopped) {
+          throw stop(e);
+        }
+        long delay = RETRY_DELAY_MILLIS << attempt;
+        log.log(Level.WARNING, "分段下载失败，{0} ms 后重试: {1} [{2}-{3}] ({4})", new Object[]{delay, resource.getPath(), segment.position, segment.end, e.toString()});
+        TimeUnit.MILLISECONDS.sleep(delay);
+      } catch (RuntimeException e) {
+        throw stop(e);
+      }
+    }
+  }
+
+  /**
+   * 通知其他分段停止，记录第一个导致停止的异常
+   *
+   * @param e   异常
+   * @param <E> 异常类型
+   * @return 原异常
+   */
+  private <E extends Exception> E stop(E e) {
+    failure.compareAndSet(null, e);
+    stopped = true;
+    return e;
+  }
+
+  /**
+   * 请求一段的剩余部分并按位置写入文件，每写入一定字节数保存一次进度
+   *
+   * @param segment    分段
+   * @param channel    文件
+   * @param validator  服务端的 ETag / Last-Modified
+   * @param progress   进度回调
+   * @param cancelled  是否已取消
+   * @param checkpoint 保存进度
+   * @throws IOException 下载失败
+   */
+  private void transferSegment(Segment segment, FileChannel channel, String validator, LongConsumer progress, BooleanSupplier cancelled,
+                               Runnable checkpoint) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT);
+    connection.setReadTimeout(READ_TIMEOUT);
+    connection.setRequestProperty("Range", "bytes=" + segment.position + "-" + segment.end);
+    if (!validator.isEmpty()) {
+      connection.setRequestProperty("If-Range", validator);
+    }
+    try {
+      int code = connection.getResponseCode();
+      if (ResourceDownloader.isBusy(code)) {
+        throw new ResourceDownloader.ServerBusyException(String.format("服务端繁忙: %s [code=%d]", url, code), ResourceDownloader.retryAfter(connection));
+      }
+      if (code == HttpURLConnection.HTTP_OK) {
+        // If-Range 不匹配，服务端的文件在下载过程中变化了，重试没有意义
+        throw new LauncherException(String.format("服务端文件已变化: %s", url));
+      }
+      if (code != HttpURLConnection.HTTP_PARTIAL || ResourceDownloader.rangeStart(connection) != segment.position) {
+        throw new IOException(String.format("分段下载失败: %s [code=%d, range=%s]", url, code, connection.getHeaderField("Content-Range")));
+      }
+      InputStream raw = connection.getInputStream();
+      // 写入使用直接缓冲区，避免 FileChannel 内部再复制到临时的直接缓冲区
+      byte[] buffer = BufferPool.acquireArray();
+      ByteBuffer direct = BufferPool.acquireDirect();
+      try (InputStream in = bandwidth.isEmpty() ? raw : new ResourceDownloader.ThrottledInputStream(raw, bandwidth)) {
+        long position = segment.position;
+        long unsaved = 0;
+        while (position <= segment.end) {
+          if (stopped || cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("下载已取消: " + resource.getPath());
+          }
+          int read = in.read(buffer, 0, (int) Math.min(buffer.length, segment.end - position + 1));
+          if (read < 0) {
+            throw new IOException(String.format("连接提前断开: %s [position=%d, end=%d]", url, position, segment.end));
+          }
+          direct.clear();
+          direct.put(buffer, 0, read).flip();
+          BufferPool.copied(read);
+          while (direct.hasRemaining()) {
+            position += channel.write(direct, position);
+          }
+          BufferPool.written(read);
+          segment.position = position;
+          progress.accept(read);
+          unsaved += read;
+          if (unsaved >= ChannelWriter.CHECKPOINT_BYTES) {
+            checkpoint.run();
+            unsaved = 0;
+          }
+        }
+      } finally {
+        BufferPool.release(buffer);
+        BufferPool.release(direct);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * 删除分段下载的文件与进度
+   *
+   * @throws IOException 删除失败
+   */
+  private void discard() throws IOException {
+    Files.deleteIfExists(dataFile);
+    Files.deleteIfExists(stateFile);
+  }
+
+  /**
+   * 分段，start 与 end 都包含在内
+   */
+  private static final class Segment {
+    /**
+     * 起始位置
+     */
+    private final long start;
+    /**
+     * 结束位置
+     */
+    private final long end;
+    /**
+     * 已经写入到的位置
+     */
+    private volatile long position;
+
+    private Segment(long start, long position, long end) {
+      this.start = start;
+      this.position = position;
+      this.end = end;
+    }
+
+    /**
+     * 是否已经下载完成
+     *
+     * @return true 已完成
+     */
+    private boolean isDone() {
+      return position > end;
+    }
+  }
+
+  /**
+   * 分段进度
+   */
+  @Data
+  @NoArgsConstructor
+  static class SegmentState {
+    /**
+     * 文件大小
+     */
+    private Long size;
+    /**
+     * 期望的摘要
+     */
+    private String hash;
+    /**
+     * 服务端 ETag / Last-Modified
+     */
+    private String validator;
+    /**
+     * 各段已经写入到的位置
+     */
+    private long[] positions;
+    /**
+     * 各段的结束位置
+     */
+    private long[] ends;
+  }
+}
@@ -0,0 +1,185 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * 启动耗时记录
+ * <p>
+ * 各阶段使用 System.nanoTime 相对于启动器启动时刻记录开始时间与耗时（毫秒），支持多线程同时记录。
+ * 启动完成后写入配置目录下的 startup-timeline.json，并通过 Stage 的 userData 传递给应用。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/21 21:06
+ */
+@Log
+public class StartupTimeline {
+  /**
+   * 记录文件名
+   */
+  public static final String FILE_NAME = "startup-timeline.json";
+  /**
+   * 启动器启动时刻（epoch 毫秒）
+   */
+  private final long startTime = System.currentTimeMillis();
+  /**
+   * JVM 启动到启动器启动的耗时，无法获取时为空
+   */
+  private final Double jvmStartup;
+  /**
+   * 各阶段记录
+   */
+  private final List<Event> events = new ArrayList<>();
+  /**
+   * 计时起点
+   */
+  private final transient long origin = System.nanoTime();
+
+  /**
+   * 以当前时刻为起点开始记录
+   */
+  public StartupTimeline() {
+    this.jvmStartup = ProcessHandle.current().info().startInstant()
+      .map(instant -> (double) (startTime - instant.toEpochMilli()))
+      .orElse(null);
+  }
+
+  /**
+   * 开始记录一个阶段，关闭时结束
+   *
+   * @param name 阶段名称
+   * @return 阶段
+   */
+  public Span begin(String name) {
+    return new Span(name, System.nanoTime());
+  }
+
+  /**
+   * 记录一个瞬时事件
+   *
+   * @param name 事件名称
+   */
+  public void mark(String name) {
+    long now = System.nanoTime();
+    add(name, now, now);
+  }
+
+  /**
+   * 所有阶段，按开始时间排序
+   *
+   * @return 阶段列表
+   */
+  public List<Event> getEvents() {
+    synchronized (events) {
+      List<Event> sorted = new ArrayList<>(events);
+      sorted.sort(Comparator.comparingDouble(Event::getStart));
+      return sorted;
+    }
+  }
+
+  /**
+   * 转为 JSON
+   *
+   * @return JSON
+   */
+  public String toJson() {
+    synchronized (events) {
+      events.sort(Comparator.comparingDouble(Event::getStart));
+      return Manifest.GSON.toJson(this);
+    }
+  }
+
+  /**
+   * 写入文件
+   *
+   * @param file 文件
+   */
+  public void write(Path file) {
+    try {
+      Files.createDirectories(file.toAbsolutePath().getParent());
+      Files.writeString(file, toJson());
+      log.log(Level.INFO, "启动耗时已记录: {0}", file);
+    } catch (IOException e) {
+      log.log(Level.WARNING, "保存启动耗时记录失败: " + file, e);
+    }
+  }
+
+  /**
+   * 记录一个阶段
+   *
+   * @param name  阶段名称
+   * @param begin 开始时刻
+   * @param end   结束时刻
+   */
+  private void add(String name, long begin, long end) {
+    Event event = new Event();
+    event.setName(name);
+    event.setThread(Thread.currentThread().getName());
+    event.setStart(toMillis(begin - origin));
+    event.setDuration(toMillis(end - begin));
+    synchronized (events) {
+      events.add(event);
+    }
+  }
+
+  /**
+   * 纳秒转为保留三位小数的毫秒
+   *
+   * @param nanos 纳秒
+   * @return 毫秒
+   */
+  private static double toMillis(long nanos) {
+    return Math.round(nanos / 1_000D) / 1_000D;
+  }
+
+  /**
+   * 正在记录的阶段
+   */
+  public class Span implements AutoCloseable {
+    private final String name;
+    private final long begin;
+
+    private Span(String name, long begin) {
+      this.name = name;
+      this.begin = begin;
+    }
+
+    @Override
+    public void close() {
+      add(name, begin, System.nanoTime());
+    }
+  }
+
+  /**
+   * 阶段记录
+   */
+  @Data
+  @NoArgsConstructor
+  public static class Event {
+    /**
+     * 阶段名称
+     */
+    private String name;
+    /**
+     * 所在线程
+     */
+    private String thread;
+    /**
+     * 相对于启动器启动的开始时间（毫秒）
+     */
+    private double start;
+    /**
+     * 耗时（毫秒）
+     */
+    private double duration;
+  }
+}
@@ -0,0 +1,84 @@
+package com.unclezs.jfx.launcher;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限速
+ * <p>
+ * 每秒补充 rate 个令牌，最多积攒 1 秒的量。读取后按实际字节数扣除令牌，不足时允许欠账，由本次调用睡眠补足，
+ * 多个线程共用一个令牌桶时总速度不超过 rate。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/01 20:12
+ */
+public class TokenBucket {
+  /**
+   * 每秒的令牌数，即 bytes/s
+   */
+  private final long rate;
+  /**
+   * 最多积攒的令牌数
+   */
+  private final long capacity;
+  /**
+   * 当前令牌数，负数表示欠账
+   */
+  private double tokens;
+  /**
+   * 上次补充令牌的时间
+   */
+  private long lastRefill = System.nanoTime();
+
+  /**
+   * 令牌桶
+   *
+   * @param rate 每秒的令牌数
+   */
+  public TokenBucket(long rate) {
+    if (rate <= 0) {
+      throw new IllegalArgumentException("rate must be positive: " + rate);
+    }
+    this.rate = rate;
+    this.capacity = rate;
+    this.tokens = rate;
+  }
+
+  /**
+   * 创建令牌桶
+   *
+   * @param rate 每秒的令牌数，为空或不大于 0 表示不限速
+   * @return 令牌桶，不限速返回 null
+   */
+  public static TokenBucket of(Long rate) {
+    return rate == null || rate <= 0 ? null : new TokenBucket(rate);
+  }
+
+  /**
+   * 扣除令牌，令牌不足时阻塞到欠账还清
+   *
+   * @param permits 令牌数
+   * @throws InterruptedException 等待被中断
+   */
+  public void acquire(long permits) throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - lastRefill) * rate / 1e9);
+      lastRefill = now;
+      tokens -= permits;
+      waitNanos = tokens >= 0 ? 0 : (long) (-tokens * 1e9 / rate);
+    }
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  }
+
+  /**
+   * 每秒的令牌数
+   *
+   * @return bytes/s
+   */
+  public long getRate() {
+    return rate;
+  }
+}
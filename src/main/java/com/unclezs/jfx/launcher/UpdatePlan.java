@@ -0,0 +1,94 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 更新计划
+ * <p>
+ * 由 {@link ManifestDiff} 比较本地与远程配置生成，之后的下载、进度统计与清理旧文件都以此为准，不再重复检查本地文件
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/30 20:18
+ */
+@Getter
+public class UpdatePlan {
+  /**
+   * 新版本配置
+   */
+  private final Manifest target;
+  /**
+   * 配置本身是否有变化，包括版本号等资源以外的字段
+   */
+  private final boolean manifestChanged;
+  /**
+   * 本地没有的资源
+   */
+  private final List<Resource> added;
+  /**
+   * 本地文件与新版本不一致的资源
+   */
+  private final List<Resource> changed;
+  /**
+   * 本地文件已经是新版本的资源
+   */
+  private final List<Resource> unchanged;
+  /**
+   * 新版本中已经不存在的资源，提交更新时删除
+   */
+  private final List<Resource> removed;
+  /**
+   * 需要下载的资源：新增与变化的资源
+   */
+  private final List<Resource> downloads;
+  /**
+   * 需要传输的字节数
+   */
+  private final long downloadBytes;
+  /**
+   * 删除的字节数
+   */
+  private final long removedBytes;
+
+  /**
+   * 更新计划
+   *
+   * @param target          新版本配置
+   * @param manifestChanged 配置本身是否有变化
+   * @param added           新增的资源
+   * @param changed         变化的资源
+   * @param unchanged       未变化的资源
+   * @param removed         删除的资源
+   */
+  UpdatePlan(Manifest target, boolean manifestChanged, List<Resource> added, List<Resource> changed, List<Resource> unchanged, List<Resource> removed) {
+    this.target = target;
+    this.manifestChanged = manifestChanged;
+    this.added = Collections.unmodifiableList(added);
+    this.changed = Collections.unmodifiableList(changed);
+    this.unchanged = Collections.unmodifiableList(unchanged);
+    this.removed = Collections.unmodifiableList(removed);
+    List<Resource> all = new ArrayList<>(added.size() + changed.size());
+    all.addAll(added);
+    all.addAll(changed);
+    this.downloads = Collections.unmodifiableList(all);
+    this.downloadBytes = all.stream().mapToLong(Resource::transferLength).sum();
+    this.removedBytes = removed.stream().mapToLong(resource -> resource.getSize() == null ? 0 : resource.getSize()).sum();
+  }
+
+  /**
+   * 是否需要更新
+   *
+   * @return true 配置有变化、有资源需要下载或删除
+   */
+  public boolean hasChanges() {
+    return manifestChanged || !downloads.isEmpty() || !removed.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("新增 %d，变化 %d，未变化 %d，删除 %d，需下载 %d bytes", added.size(), changed.size(), unchanged.size(), removed.size(), downloadBytes);
+  }
+}
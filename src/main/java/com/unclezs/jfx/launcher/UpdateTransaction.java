@@ -0,0 +1,443 @@
+package com.unclezs.jfx.launcher;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.java.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 更新事务
+ * <p>
+ * 资源先下载到暂存目录，全部下载校验完成后在日志中标记为提交中，再原子移动到目标位置，最后替换本地配置。
+ * 启动时如果发现提交中或已准备好的日志则完成提交，否则视为回滚，已经暂存的文件会在下次更新时复用。
+ *
+ * @author blog.unclezs.com
+ * @date 2022/06/08 21:37
+ */
+@Log
+public class UpdateTransaction {
+  /**
+   * 事务日志文件名
+   */
+  public static final String JOURNAL_FILE = "update-journal.json";
+  /**
+   * 暂存目录
+   */
+  public static final String STAGING_DIR = ".staging";
+  /**
+   * 状态
+   */
+  private State state = State.PREPARING;
+  /**
+   * 更新到的版本
+   */
+  private String version;
+  /**
+   * 本地配置文件位置
+   */
+  private String manifestPath;
+  /**
+   * 资源路径 -> 暂存信息
+   */
+  private ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  /**
+   * 提交时删除的旧版本文件
+   */
+  private List<String> removed = new ArrayList<>();
+  /**
+   * 事务日志
+   */
+  private transient Path journalFile;
+  /**
+   * 暂存目录
+   */
+  private transient Path stagingDir;
+  /**
+   * 新版本配置
+   */
+  private transient Manifest manifest;
+
+  /**
+   * 开始一次更新，复用上次未完成的更新中仍然有效的暂存文件
+   *
+   * @param remote        新版本配置
+   * @param resources     需要更新的资源
+   * @param localManifest 本地配置文件
+   * @return 事务
+   */
+  public static UpdateTransaction begin(Manifest remote, List<Resource> resources, Path localManifest) {
+    return begin(remote, resources, List.of(), localManifest);
+  }
+
+  /**
+   * 开始一次更新，复用上次未完成的更新中仍然有效的暂存文件
+   *
+   * @param remote        新版本配置
+   * @param resources     需要更新的资源
+   * @param removed       新版本中已经不存在、提交时删除的资源
+   * @param localManifest 本地配置文件
+   * @return 事务
+   */
+  public static UpdateTransaction begin(Manifest remote, List<Resource> resources, List<Resource> removed, Path localManifest) {
+    UpdateTransaction transaction = new UpdateTransaction();
+    transaction.manifest = remote;
+    transaction.journalFile = localManifest.resolveSibling(JOURNAL_FILE);
+    transaction.stagingDir = localManifest.resolveSibling(STAGING_DIR);
+    transaction.version = remote.getVersion();
+    transaction.manifestPath = localManifest.toString();
+    for (Resource resource : resources) {
+      Entry entry = new Entry();
+      entry.setPath(resource.getPath());
+      entry.setTarget(resource.toLocalPath().toString());
+      entry.setStaged(transaction.stagingDir.resolve(stagedName(resource.getPath())).toString());
+      entry.setSize(resource.getSize());
+      entry.setHash(resource.getHash());
+      transaction.entries.put(resource.getPath(), entry);
+    }
+    removed.forEach(resource -> transaction.removed.add(resource.toLocalPath().toString()));
+    try {
+      Files.createDirectories(transaction.stagingDir);
+      transaction.cleanStaging();
+      transaction.writeJournal();
+    } catch (IOException e) {
+      throw new LauncherException("创建更新事务失败", e);
+    }
+    return transaction;
+  }
+
+  /**
+   * 启动时恢复上次中断的更新
+   *
+   * @param localManifest 本地配置文件
+   * @param fileIndex     文件索引
+   * @return true 提交了更新
+   */
+  public static boolean recover(Path localManifest, FileIndex fileIndex) {
+    UpdateTransaction transaction = load(localManifest.resolveSibling(JOURNAL_FILE));
+    if (transaction == null) {
+      return false;
+    }
+    switch (transaction.state) {
+      case READY:
+        log.log(Level.INFO, "提交后台下载的更新: {0}", transaction.version);
+        transaction.markCommitting();
+        transaction.apply(fileIndex);
+        return true;
+      case COMMITTING:
+        log.log(Level.INFO, "继续完成上次中断的更新: {0}", transaction.version);
+        transaction.apply(fileIndex);
+        return true;
+      default:
+        // 正式文件还未被改动，保留暂存文件等待下次更新复用即可
+        log.log(Level.INFO, "回滚上次未完成的更新: {0}", transaction.version);
+        return false;
+    }
+  }
+
+  /**
+   * 资源的暂存位置
+   *
+   * @param resource 资源
+   * @return 暂存文件
+   */
+  public Path stagedPath(Resource resource) {
+    return Path.of(entries.get(resource.getPath()).getStaged());
+  }
+
+  /**
+   * 资源是否已经完整暂存，上次中断时已下载完成的文件无需再次下载
+   *
+   * @param resource 资源
+   * @return true 已暂存
+   */
+  public boolean isStaged(Resource resource) {
+    Entry entry = entries.get(resource.getPath());
+    Path staged = Path.of(entry.getStaged());
+    try {
+      BasicFileAttributes attributes = FileIndex.attributes(staged);
+      if (attributes == null || !attributes.isRegularFile() || resource.getSize() == null || attributes.size() != resource.getSize()) {
+        return false;
+      }
+      if (resource.getHash() == null || resource.getHash().isBlank()) {
+        return false;
+      }
+      String hash = HashUtils.sha256(staged);
+      if (HashUtils.matches(resource.getHash(), hash)) {
+        entry.setActualHash(hash);
+        return true;
+      }
+    } catch (IOException e) {
+      log.log(Level.WARNING, "检查暂存文件失败: " + staged, e);
+    }
+    return false;
+  }
+
+  /**
+   * 记录资源已暂存完成
+   *
+   * @param resource 资源
+   * @param hash     暂存文件的摘要
+   */
+  public void staged(Resource resource, String hash) {
+    entries.get(resource.getPath()).setActualHash(hash);
+  }
+
+  /**
+   * 提交更新：标记日志为提交中后，移动暂存文件并替换本地配置
+   *
+   * @param fileIndex 文件索引
+   */
+  public void commit(FileIndex fileIndex) {
+    stageManifest();
+    markCommitting();
+    apply(fileIndex);
+    log.log(Level.INFO, "更新已提交: {0}", version);
+  }
+
+  /**
+   * 资源已全部暂存，标记为已准备好，下次启动时提交。应用运行中后台下载的更新使用
+   *
+   * @param validator 新版本配置的缓存校验信息，随配置一起暂存，提交时保存，可为空
+   */
+  public void prepare(ManifestValidator validator) {
+    stageManifest();
+    if (validator != null && validator.isPresent()) {
+      try {
+        Files.writeString(stagingDir.resolve(ManifestValidator.FILE_NAME), Manifest.GSON.toJson(validator));
+      } catch (IOException e) {
+        throw new LauncherException("暂存配置缓存信息失败", e);
+      }
+    }
+    state = State.READY;
+    try {
+      writeJournal();
+    } catch (IOException e) {
+      throw new LauncherException("保存更新事务失败", e);
+    }
+  }
+
+  /**
+   * 暂存新版本配置
+   */
+  private void stageManifest() {
+    try {
+      Path stagedManifest = stagingDir.resolve(Path.of(manifestPath).getFileName());
+      manifest.write(stagedManifest);
+    } catch (IOException e) {
+      throw new LauncherException("暂存配置文件失败", e);
+    }
+  }
+
+  /**
+   * 标记为提交中，此后中断的话下次启动会继续完成提交
+   */
+  private void markCommitting() {
+    state = State.COMMITTING;
+    try {
+      writeJournal();
+    } catch (IOException e) {
+      throw new LauncherException("提交更新失败", e);
+    }
+  }
+
+  /**
+   * 执行提交，可重复执行：已经移动过的文件会被跳过
+   *
+   * @param fileIndex 文件索引
+   */
+  private void apply(FileIndex fileIndex) {
+    try {
+      for (Entry entry : entries.values()) {
+        Path staged = Path.of(entry.getStaged());
+        Path target = Path.of(entry.getTarget());
+        if (Files.exists(staged)) {
+          Files.createDirectories(target.toAbsolutePath().getParent());
+          ResourceDownloader.move(staged, target);
+        }
+        if (fileIndex != null && Files.exists(target)) {
+          fileIndex.update(target, entry.getActualHash());
+        }
+      }
+      Path localManifest = Path.of(manifestPath);
+      Path stagedManifest = stagingDir.resolve(localManifest.getFileName());
+      if (Files.exists(stagedManifest)) {
+        Files.createDirectories(localManifest.getParent());
+        ResourceDownloader.move(stagedManifest, localManifest);
+      }
+      // 后台准备的更新提交后，本地配置才与暂存的校验信息一致
+      Path stagedValidator = stagingDir.resolve(ManifestValidator.FILE_NAME);
+      if (Files.exists(stagedValidator)) {
+        ResourceDownloader.move(stagedValidator, localManifest.resolveSibling(ManifestValidator.FILE_NAME));
+      }
+      for (String path : removed == null ? List.<String>of() : removed) {
+        Path file = Path.of(path);
+        if (Files.deleteIfExists(file)) {
+          log.log(Level.INFO, "删除旧版本文件: {0}", path);
+        }
+        if (fileIndex != null) {
+          fileIndex.remove(file);
+        }
+      }
+      Files.deleteIfExists(journalFile);
+      deleteStaging();
+    } catch (IOException e) {
+      throw new LauncherException("提交更新失败，下次启动将继续提交", e);
+    }
+  }
+
+  /**
+   * 删除暂存目录中不属于本次更新的文件
+   *
+   * @throws IOException 删除失败
+   */
+  private void cleanStaging() throws IOException {
+    Set<String> keep = entries.values().stream()
+      .map(entry -> Path.of(entry.getStaged()).getFileName().toString())
+      .collect(Collectors.toSet());
+    try (Stream<Path> files = Files.list(stagingDir)) {
+      for (Path file : files.collect(Collectors.toList())) {
+        // 暂存文件本身及其 .part 等附属文件都保留
+        String name = file.getFileName().toString();
+        if (keep.stream().noneMatch(name::startsWith)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * 删除暂存目录
+   *
+   * @throws IOException 删除失败
+   */
+  private void deleteStaging() throws IOException {
+    if (Files.notExists(stagingDir)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(stagingDir)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  /**
+   * 写入事务日志，先写临时文件并刷盘再原子替换
+   *
+   * @throws IOException 写入失败
+   */
+  private void writeJournal() throws IOException {
+    Files.createDirectories(journalFile.getParent());
+    Path temp = journalFile.resolveSibling(journalFile.getFileName() + ".tmp");
+    ByteBuffer content = ByteBuffer.wrap(Manifest.GSON.toJson(this).getBytes(StandardCharsets.UTF_8));
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (content.hasRemaining()) {
+        channel.write(content);
+      }
+      channel.force(true);
+    }
+    ResourceDownloader.move(temp, journalFile);
+  }
+
+  /**
+   * 读取事务日志
+   *
+   * @param journalFile 事务日志
+   * @return 事务，不存在或损坏返回 null
+   */
+  private static UpdateTransaction load(Path journalFile) {
+    if (Files.notExists(journalFile)) {
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+      UpdateTransaction transaction = Manifest.GSON.fromJson(reader, UpdateTransaction.class);
+      if (transaction == null || transaction.entries == null || transaction.manifestPath == null) {
+        return null;
+      }
+      transaction.journalFile = journalFile;
+      transaction.stagingDir = journalFile.resolveSibling(STAGING_DIR);
+      return transaction;
+    } catch (Exception e) {
+      log.log(Level.WARNING, "事务日志损坏，忽略: " + journalFile, e);
+      return null;
+    }
+  }
+
+  /**
+   * 暂存文件名，使用路径摘要避免不同目录的同名文件冲突
+   *
+   * @param path 资源路径
+   * @return 文件名
+   */
+  private static String stagedName(String path) {
+    String digest = HashUtils.toHex(HashUtils.newDigest().digest(path.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+    return digest + "-" + Path.of(path).getFileName();
+  }
+
+  /**
+   * 事务状态
+   */
+  public enum State {
+    /**
+     * 下载中，正式文件未改动
+     */
+    PREPARING,
+    /**
+     * 已准备好，暂存文件都已校验完成，等待下次启动时提交
+     */
+    READY,
+    /**
+     * 提交中，暂存文件都已校验完成
+     */
+    COMMITTING
+  }
+
+  /**
+   * 暂存的资源
+   */
+  @Data
+  @NoArgsConstructor
+  public static class Entry {
+    /**
+     * 资源路径
+     */
+    private String path;
+    /**
+     * 目标文件
+     */
+    private String target;
+    /**
+     * 暂存文件
+     */
+    private String staged;
+    /**
+     * 期望的大小
+     */
+    private Long size;
+    /**
+     * 期望的摘要
+     */
+    private String hash;
+    /**
+     * 暂存文件的实际摘要
+     */
+    private String actualHash;
+  }
+}
@@ -9,6 +9,8 @@ module com.unclezs.jfx.launcher {
   requires javafx.controls;
   requires javafx.graphics;
   requires java.logging;
+  requires java.management;
+  requires static jdk.jfr;
 
   opens com.unclezs.jfx.launcher to com.google.gson;
   exports com.unclezs.jfx.launcher;
@@ -0,0 +1,78 @@
+package com.unclezs.jfx.launcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 二进制配置测试
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/10 11:40
+ */
+class BinaryManifestTest {
+  @Test
+  void writeThenRead() throws IOException {
+    Manifest manifest = new Manifest();
+    manifest.setUrl("https://example.com/app/");
+    manifest.setMirrors(List.of("https://mirror.example.com/app/"));
+    manifest.setVersion("1.2.0");
+    manifest.setLaunchClass("com.example.App");
+    manifest.setLaunchModule("com.example");
+    manifest.setChangeLog(List.of("修复问题", "新功能"));
+    manifest.setParallelism(4);
+    manifest.setUpdateMode(Manifest.UpdateMode.BACKGROUND);
+
+    Resource jar = new Resource("lib/app.jar", 1024L, Resource.Type.JAR);
+    jar.setHash("ab".repeat(32));
+    Patch patch = new Patch();
+    patch.setPath("patches/lib/app.jar.0123456789abcdef.patch");
+    patch.setSize(100L);
+    patch.setHash("cd".repeat(32));
+    patch.setFromHash("ef".repeat(32));
+    patch.setFromVersion("1.1.0");
+    jar.setPatches(List.of(patch));
+    Resource data = new Resource("lib/data.bin", 1L << 33, Resource.Type.JAR);
+    data.setEncoding(Resource.Encoding.GZIP);
+    data.setTransferSize(1L << 30);
+    Resource win = new Resource("native/app.dll", 2048L, Platform.WIN, Resource.Type.NATIVE);
+    Resource linux = new Resource("native/libapp.so", 4096L, Platform.LINUX, Resource.Type.NATIVE);
+    manifest.setResources(List.of(jar, data, win, linux));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryManifest.write(manifest, out);
+    Manifest read = BinaryManifest.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(manifest, read);
+    assertEquals(manifest.getResources(), read.getResources());
+    assertEquals(manifest.resolveResources(), read.resolveResources());
+    assertNotNull(read.findResource("lib/app.jar"));
+    assertTrue(out.size() < manifest.toJson().length());
+  }
+
+  @Test
+  void writeThenReadEmpty() throws IOException {
+    Manifest manifest = new Manifest();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryManifest.write(manifest, out);
+    Manifest read = BinaryManifest.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(manifest, read);
+    assertTrue(read.getResources().isEmpty());
+    assertNull(read.getVersion());
+  }
+
+  @Test
+  void rejectsJson() {
+    byte[] json = new Manifest().toJson().getBytes();
+    assertThrows(IOException.class, () -> BinaryManifest.read(new ByteArrayInputStream(json)));
+  }
+}
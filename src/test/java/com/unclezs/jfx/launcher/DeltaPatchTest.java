@@ -0,0 +1,94 @@
+package com.unclezs.jfx.launcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量补丁测试
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/10 10:20
+ */
+class DeltaPatchTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void diffThenApply() throws IOException {
+    byte[] oldData = random(200_000, 1);
+    byte[] newData = modify(oldData);
+    Path oldFile = Files.write(dir.resolve("old.bin"), oldData);
+    ByteArrayOutputStream patch = new ByteArrayOutputStream();
+    DeltaPatch.diff(oldData, newData, patch);
+    assertTrue(patch.size() < newData.length / 10);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    long written = DeltaPatch.apply(oldFile, new ByteArrayInputStream(patch.toByteArray()), out);
+    assertEquals(newData.length, written);
+    assertArrayEquals(newData, out.toByteArray());
+  }
+
+  @Test
+  void generateThenApply() throws IOException {
+    Path oldDir = Files.createDirectories(dir.resolve("old"));
+    Path newDir = Files.createDirectories(dir.resolve("new"));
+    byte[] oldData = random(100_000, 2);
+    byte[] newData = modify(oldData);
+    Files.write(oldDir.resolve("app.jar"), oldData);
+    Files.write(newDir.resolve("app.jar"), newData);
+    Files.writeString(oldDir.resolve("same.txt"), "same");
+    Files.writeString(newDir.resolve("same.txt"), "same");
+    Path manifestFile = dir.resolve("app.json");
+    Files.writeString(manifestFile, "{\n  \"launchClass\": \"App\",\n  \"resources\": [\n    {\"path\": \"app.jar\"},\n"
+      + "    {\"path\": \"same.txt\"}\n  ]\n}\n");
+
+    Map<String, Patch> patches = DeltaPatch.generate(oldDir, newDir, manifestFile, "1.0.0");
+    assertEquals(1, patches.size());
+    Patch patch = patches.get("app.jar");
+    assertNotNull(patch);
+    assertEquals(HashUtils.sha256(oldDir.resolve("app.jar")), patch.getFromHash());
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (InputStream in = Files.newInputStream(newDir.resolve(patch.getPath()))) {
+      DeltaPatch.apply(oldDir.resolve("app.jar"), in, out);
+    }
+    assertArrayEquals(newData, out.toByteArray());
+
+    String json = Files.readString(manifestFile, StandardCharsets.UTF_8);
+    assertTrue(json.contains("\n  \""), "配置应保持缩进格式");
+    Manifest manifest = Manifest.load(manifestFile.toUri());
+    Resource resource = manifest.getResources().get(0);
+    assertEquals(HashUtils.sha256(newDir.resolve("app.jar")), resource.getHash());
+    assertEquals(List.of(patch), resource.getPatches());
+  }
+
+  private static byte[] random(int size, long seed) {
+    byte[] data = new byte[size];
+    new Random(seed).nextBytes(data);
+    return data;
+  }
+
+  private static byte[] modify(byte[] oldData) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(oldData, 0, 50_000);
+    out.writeBytes("inserted in the middle".getBytes(StandardCharsets.UTF_8));
+    out.write(oldData, 60_000, oldData.length - 60_000);
+    return out.toByteArray();
+  }
+}
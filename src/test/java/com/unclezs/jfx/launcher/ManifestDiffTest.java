@@ -0,0 +1,90 @@
+package com.unclezs.jfx.launcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 配置比较测试
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/10 11:05
+ */
+class ManifestDiffTest {
+  @TempDir
+  Path dir;
+
+  @Test
+  void installedManifestTrustsUnchangedEntries() throws IOException {
+    Resource same = write("same.jar", "same");
+    Resource oldChanged = write("changed.jar", "old");
+    Resource removed = write("removed.jar", "removed");
+    Resource newChanged = resource("changed.jar", "new content");
+    Resource added = resource("added.jar", "added");
+
+    UpdatePlan plan = ManifestDiff.compare(manifest(same, oldChanged, removed), manifest(same, newChanged, added), null, true);
+    assertEquals(List.of("same.jar"), paths(plan.getUnchanged()));
+    assertEquals(List.of("changed.jar"), paths(plan.getChanged()));
+    assertEquals(List.of("added.jar"), paths(plan.getAdded()));
+    assertEquals(List.of("removed.jar"), paths(plan.getRemoved()));
+  }
+
+  @Test
+  void installedManifestChecksMissingOrResizedFiles() throws IOException {
+    Resource deleted = write("deleted.jar", "deleted");
+    Resource truncated = write("truncated.jar", "truncated");
+    Files.delete(deleted.toLocalPath());
+    Files.writeString(truncated.toLocalPath(), "trunc");
+
+    UpdatePlan plan = ManifestDiff.compare(manifest(deleted, truncated), manifest(deleted, truncated), null, true);
+    assertTrue(plan.getUnchanged().isEmpty());
+    assertEquals(List.of("deleted.jar", "truncated.jar"), paths(plan.getChanged()));
+  }
+
+  @Test
+  void notInstalledManifestChecksEveryFile() throws IOException {
+    Resource same = write("same.jar", "same");
+    Resource modified = write("modified.jar", "modified");
+    // 大小一致但内容被改动，只有完整检查才能发现
+    Files.writeString(modified.toLocalPath(), "MODIFIED");
+    Resource local = write("local.jar", "local");
+
+    UpdatePlan plan = ManifestDiff.compare(manifest(same, modified, local), manifest(same, modified), null, false);
+    assertEquals(List.of("same.jar"), paths(plan.getUnchanged()));
+    assertEquals(List.of("modified.jar"), paths(plan.getChanged()));
+    assertTrue(plan.getRemoved().isEmpty());
+  }
+
+  private Resource write(String name, String content) throws IOException {
+    Resource resource = resource(name, content);
+    Files.writeString(resource.toLocalPath(), content);
+    return resource;
+  }
+
+  private Resource resource(String name, String content) {
+    byte[] data = content.getBytes(StandardCharsets.UTF_8);
+    Resource resource = new Resource(dir.resolve(name).toString(), (long) data.length, Resource.Type.JAR);
+    resource.setHash(HashUtils.toHex(HashUtils.newDigest().digest(data)));
+    return resource;
+  }
+
+  private static Manifest manifest(Resource... resources) {
+    Manifest manifest = new Manifest();
+    manifest.setResources(Arrays.asList(resources));
+    return manifest;
+  }
+
+  private List<String> paths(List<Resource> resources) {
+    return resources.stream().map(resource -> dir.relativize(Path.of(resource.getPath())).toString()).sorted().collect(Collectors.toList());
+  }
+}
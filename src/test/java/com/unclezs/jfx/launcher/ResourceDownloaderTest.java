@@ -0,0 +1,235 @@
+package com.unclezs.jfx.launcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 断点续传测试
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/10 15:30
+ */
+class ResourceDownloaderTest {
+  private static final int SIZE = 1 << 20;
+  private static final int SEGMENTED_SIZE = 16 << 20;
+  private static final int CHUNK = 8192;
+
+  @TempDir
+  Path dir;
+  private HttpServer server;
+  private volatile byte[] content;
+  private volatile String etag = "\"v1\"";
+  /**
+   * 每次请求的 Range 与 If-Range 请求头
+   */
+  private final List<String[]> requests = new CopyOnWriteArrayList<>();
+  /**
+   * 分段请求时返回 503
+   */
+  private volatile boolean busy;
+  /**
+   * 返回的内容字节数
+   */
+  private final AtomicLong served = new AtomicLong();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    content = random(1, SIZE);
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  void resumeWithRangeAndIfRange() throws IOException {
+    Resource resource = new Resource("app.jar", (long) SIZE, Resource.Type.JAR);
+    resource.setHash(HashUtils.toHex(HashUtils.newDigest().digest(content)));
+    Path target = dir.resolve("app.jar");
+    long interrupted = interrupt(resource, target);
+
+    AtomicLong progress = new AtomicLong();
+    String hash = new ResourceDownloader(resource, url(), target).download(progress::addAndGet, () -> false);
+
+    assertEquals(resource.getHash(), hash);
+    assertArrayEquals(content, Files.readAllBytes(target));
+    assertEquals(SIZE, progress.get());
+    String[] resumed = requests.get(1);
+    assertEquals("bytes=" + interrupted + "-", resumed[0]);
+    assertEquals(etag, resumed[1]);
+    assertTrue(Files.notExists(dir.resolve("app.jar" + ResourceDownloader.PART_SUFFIX)));
+    assertTrue(Files.notExists(dir.resolve("app.jar" + ResourceDownloader.META_SUFFIX)));
+  }
+
+  @Test
+  void restartWhenIfRangeDoesNotMatch() throws IOException {
+    // 没有摘要时依赖 ETag 判断服务端文件是否变化
+    Resource resource = new Resource("app.jar", (long) SIZE, Resource.Type.JAR);
+    Path target = dir.resolve("app.jar");
+    interrupt(resource, target);
+    content = random(2, SIZE);
+    etag = "\"v2\"";
+
+    AtomicLong progress = new AtomicLong();
+    new ResourceDownloader(resource, url(), target).download(progress::addAndGet, () -> false);
+
+    assertArrayEquals(content, Files.readAllBytes(target));
+    assertEquals("\"v1\"", requests.get(1)[1]);
+    assertEquals(SIZE, progress.get());
+  }
+
+  @Test
+  void resumeInterruptedSegments() throws IOException {
+    content = random(3, SEGMENTED_SIZE);
+    Resource resource = new Resource("big.jar", (long) SEGMENTED_SIZE, Resource.Type.JAR);
+    resource.setHash(HashUtils.toHex(HashUtils.newDigest().digest(content)));
+    Path target = dir.resolve("big.jar");
+    Path state = dir.resolve("big.jar" + SegmentedDownloader.STATE_SUFFIX);
+    // 两段各 8MB，取消时至少有一段写入超过 4MB，进度应当已经在下载过程中保存过
+    AtomicLong received = new AtomicLong();
+    AtomicBoolean savedWhileRunning = new AtomicBoolean();
+    ResourceDownloader first = new ResourceDownloader(resource, url(), target);
+    first.setSegmentation(2, 1);
+    assertThrows(CancellationException.class, () -> first.download(received::addAndGet, () -> {
+      if (received.get() < SEGMENTED_SIZE * 3L / 4) {
+        return false;
+      }
+      savedWhileRunning.compareAndSet(false, Files.exists(state));
+      return true;
+    }));
+    assertTrue(savedWhileRunning.get());
+    SegmentedDownloader.SegmentState saved = Manifest.GSON.fromJson(Files.readString(state), SegmentedDownloader.SegmentState.class);
+    long done = saved.getPositions()[0] + saved.getPositions()[1] - saved.getEnds()[0] - 1;
+    assertTrue(done > 0 && done < SEGMENTED_SIZE);
+
+    served.set(0);
+    requests.clear();
+    AtomicLong progress = new AtomicLong();
+    ResourceDownloader second = new ResourceDownloader(resource, url(), target);
+    second.setSegmentation(2, 1);
+    String hash = second.download(progress::addAndGet, () -> false);
+
+    assertEquals(resource.getHash(), hash);
+    assertArrayEquals(content, Files.readAllBytes(target));
+    assertEquals(SEGMENTED_SIZE, progress.get());
+    assertEquals(SEGMENTED_SIZE - done, served.get());
+    // 未完成的分段从保存的位置继续
+    for (int i = 0; i < saved.getPositions().length; i++) {
+      String range = "bytes=" + saved.getPositions()[i] + "-" + saved.getEnds()[i];
+      boolean requested = requests.stream().anyMatch(request -> range.equals(request[0]));
+      assertEquals(saved.getPositions()[i] <= saved.getEnds()[i], requested, range);
+    }
+    assertTrue(Files.notExists(state));
+  }
+
+  @Test
+  void segmentBusyIsReportedToCaller() throws IOException {
+    content = random(4, SEGMENTED_SIZE);
+    busy = true;
+    Resource resource = new Resource("big.jar", (long) SEGMENTED_SIZE, Resource.Type.JAR);
+    ResourceDownloader downloader = new ResourceDownloader(resource, url(), dir.resolve("big.jar"));
+    downloader.setSegmentation(2, 1);
+    long start = System.nanoTime();
+    ResourceDownloader.ServerBusyException e = assertThrows(ResourceDownloader.ServerBusyException.class, () -> downloader.download(read -> {
+    }, () -> false));
+    // 不在分段内部按 Retry-After 等待，交给调度器处理
+    assertEquals(120_000, e.getRetryAfterMillis());
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+  }
+
+  /**
+   * 下载到一半取消，保留 .part 文件
+   *
+   * @return 已下载的字节数
+   */
+  private long interrupt(Resource resource, Path target) throws IOException {
+    AtomicLong received = new AtomicLong();
+    ResourceDownloader downloader = new ResourceDownloader(resource, url(), target);
+    assertThrows(CancellationException.class, () -> downloader.download(received::addAndGet, () -> received.get() >= SIZE / 3));
+    Path part = dir.resolve("app.jar" + ResourceDownloader.PART_SUFFIX);
+    assertEquals(received.get(), Files.size(part));
+    assertNull(requests.get(0)[0]);
+    return received.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String range = exchange.getRequestHeaders().getFirst("Range");
+    String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+    requests.add(new String[]{range, ifRange});
+    byte[] data = content;
+    int start = 0;
+    int end = data.length - 1;
+    exchange.getResponseHeaders().set("ETag", etag);
+    exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+    if ("HEAD".equals(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().set("Content-Length", String.valueOf(data.length));
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+      return;
+    }
+    if (busy) {
+      exchange.getResponseHeaders().set("Retry-After", "120");
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+      return;
+    }
+    if (range != null && (ifRange == null || ifRange.equals(etag))) {
+      String[] bounds = range.substring("bytes=".length()).split("-");
+      start = Integer.parseInt(bounds[0]);
+      end = bounds.length > 1 ? Integer.parseInt(bounds[1]) : end;
+      exchange.getResponseHeaders().set("Content-Range", String.format("bytes %d-%d/%d", start, end, data.length));
+      exchange.sendResponseHeaders(206, end - start + 1);
+    } else {
+      exchange.sendResponseHeaders(200, data.length);
+    }
+    try (OutputStream out = exchange.getResponseBody()) {
+      for (int i = start; i <= end; i += CHUNK) {
+        int length = Math.min(CHUNK, end - i + 1);
+        out.write(data, i, length);
+        out.flush();
+        served.addAndGet(length);
+      }
+    } catch (IOException e) {
+      // 客户端取消下载
+    }
+  }
+
+  private URL url() throws IOException {
+    return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/app.jar");
+  }
+
+  private static byte[] random(long seed, int size) {
+    byte[] data = new byte[size];
+    new Random(seed).nextBytes(data);
+    return data;
+  }
+}
@@ -0,0 +1,126 @@
+package com.unclezs.jfx.launcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 更新事务恢复测试
+ *
+ * @author blog.unclezs.com
+ * @date 2022/07/10 14:10
+ */
+class UpdateTransactionTest {
+  @TempDir
+  Path dir;
+  private Path localManifest;
+  private Path journal;
+  private Resource app;
+  private Resource lib;
+  private Resource old;
+  private Manifest remote;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    localManifest = dir.resolve("app.json");
+    journal = dir.resolve(UpdateTransaction.JOURNAL_FILE);
+    Manifest local = new Manifest();
+    local.setVersion("1.0.0");
+    local.write(localManifest);
+    app = resource("app.jar", "app 2.0");
+    lib = resource("lib.jar", "lib 2.0");
+    old = resource("old.jar", "old");
+    Files.writeString(app.toLocalPath(), "app 1.0");
+    Files.writeString(old.toLocalPath(), "old");
+    remote = new Manifest();
+    remote.setVersion("2.0.0");
+    remote.setResources(List.of(app, lib));
+  }
+
+  @Test
+  void recoverCommitsReadyUpdate() throws IOException {
+    UpdateTransaction transaction = stage();
+    ManifestValidator validator = new ManifestValidator();
+    validator.setUri("https://example.com/app.json");
+    validator.setEtag("\"v2\"");
+    transaction.prepare(validator);
+    assertEquals("app 1.0", Files.readString(app.toLocalPath()));
+
+    FileIndex fileIndex = FileIndex.load(dir.resolve(FileIndex.FILE_NAME));
+    assertTrue(UpdateTransaction.recover(localManifest, fileIndex));
+    assertCommitted();
+    ManifestValidator saved = ManifestValidator.load(localManifest, URI.create("https://example.com/app.json"));
+    assertEquals("\"v2\"", saved.getEtag());
+    assertEquals(HashUtils.sha256(app.toLocalPath()), fileIndex.hash(app.toLocalPath(), FileIndex.attributes(app.toLocalPath())));
+  }
+
+  @Test
+  void recoverFinishesInterruptedCommit() throws IOException {
+    UpdateTransaction transaction = stage();
+    transaction.prepare(null);
+    // 模拟提交到一半被中断：日志已标记为提交中，部分文件已经移动
+    String content = Files.readString(journal, StandardCharsets.UTF_8);
+    Files.writeString(journal, content.replace("\"READY\"", "\"COMMITTING\""));
+    Files.move(transaction.stagedPath(app), app.toLocalPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    assertTrue(UpdateTransaction.recover(localManifest, null));
+    assertCommitted();
+    // 再次启动时没有需要恢复的事务
+    assertFalse(UpdateTransaction.recover(localManifest, null));
+  }
+
+  @Test
+  void recoverKeepsPreparingUpdate() throws IOException {
+    UpdateTransaction transaction = stage();
+
+    assertFalse(UpdateTransaction.recover(localManifest, null));
+    assertEquals("app 1.0", Files.readString(app.toLocalPath()));
+    assertTrue(Files.exists(old.toLocalPath()));
+    assertTrue(Files.exists(transaction.stagedPath(app)));
+    assertEquals("1.0.0", Manifest.load(localManifest.toUri()).getVersion());
+  }
+
+  /**
+   * 开始事务并暂存全部资源
+   */
+  private UpdateTransaction stage() throws IOException {
+    UpdateTransaction transaction = UpdateTransaction.begin(remote, List.of(app, lib), List.of(old), localManifest);
+    for (Resource resource : List.of(app, lib)) {
+      Path staged = transaction.stagedPath(resource);
+      Files.writeString(staged, content(resource));
+      transaction.staged(resource, HashUtils.sha256(staged));
+    }
+    return transaction;
+  }
+
+  private void assertCommitted() throws IOException {
+    assertEquals("app 2.0", Files.readString(app.toLocalPath()));
+    assertEquals("lib 2.0", Files.readString(lib.toLocalPath()));
+    assertFalse(Files.exists(old.toLocalPath()));
+    assertEquals("2.0.0", Manifest.load(localManifest.toUri()).getVersion());
+    assertFalse(Files.exists(journal));
+    assertFalse(Files.exists(dir.resolve(UpdateTransaction.STAGING_DIR)));
+  }
+
+  private Resource resource(String name, String content) {
+    Resource resource = new Resource(dir.resolve(name).toString(), (long) content.length(), Resource.Type.JAR);
+    resource.setHash(HashUtils.toHex(HashUtils.newDigest().digest(content.getBytes(StandardCharsets.UTF_8))));
+    return resource;
+  }
+
+  private static String content(Resource resource) {
+    return resource.getPath().endsWith("app.jar") ? "app 2.0" : "lib 2.0";
+  }
+}